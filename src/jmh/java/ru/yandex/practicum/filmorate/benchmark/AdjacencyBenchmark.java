@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.IntAdjacency;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение хранения связей (лайки, дружба): Map<Integer, Set<Integer>> против IntAdjacency.
+ * Занимаемая память печатается в setUp - по разнице занятой кучи после сборки мусора.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class AdjacencyBenchmark {
+    @Param({"boxed", "primitive"})
+    public String implementation;
+
+    @Param({"10000"})
+    public int nodes;
+
+    @Param({"100"})
+    public int edgesPerNode;
+
+    private Adjacency adjacency;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        adjacency = switch (implementation) {
+            case "boxed" -> new BoxedAdjacency();
+            case "primitive" -> new PrimitiveAdjacency();
+            default -> throw new IllegalArgumentException("Неизвестная реализация: " + implementation);
+        };
+
+        Random random = new Random(42);
+        long edges = 0;
+        for (int node = 1; node <= nodes; node++) {
+            for (int i = 0; i < edgesPerNode; i++) {
+                if (adjacency.add(node, random.nextInt(nodes) + 1)) {
+                    edges++;
+                }
+            }
+        }
+
+        long retained = usedHeap() - before;
+        System.out.printf("%n%s: %d связей, %.1f байт на связь в куче%n",
+                implementation, edges, (double) retained / edges);
+        if (adjacency instanceof PrimitiveAdjacency primitive) {
+            System.out.printf("primitive: оценка IntAdjacency %.1f байт на связь%n",
+                    primitive.adjacency.bytesPerEdge());
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return adjacency.contains(random.nextInt(nodes) + 1, random.nextInt(nodes) + 1);
+    }
+
+    @Benchmark
+    public int commonCount() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return adjacency.commonCount(random.nextInt(nodes) + 1, random.nextInt(nodes) + 1);
+    }
+
+    @Benchmark
+    public boolean addAndRemove() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int node = random.nextInt(nodes) + 1;
+        int target = nodes + 1 + random.nextInt(nodes);
+        adjacency.add(node, target);
+        return adjacency.remove(node, target);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private interface Adjacency {
+        boolean add(int node, int target);
+
+        boolean remove(int node, int target);
+
+        boolean contains(int node, int target);
+
+        int commonCount(int node1, int node2);
+    }
+
+    // Так хранились лайки и дружба в in-memory хранилищах раньше
+    private static final class BoxedAdjacency implements Adjacency {
+        private final Map<Integer, Set<Integer>> rows = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean add(int node, int target) {
+            return rows.computeIfAbsent(node, key -> ConcurrentHashMap.newKeySet()).add(target);
+        }
+
+        @Override
+        public boolean remove(int node, int target) {
+            Set<Integer> row = rows.get(node);
+            return row != null && row.remove(target);
+        }
+
+        @Override
+        public boolean contains(int node, int target) {
+            return rows.getOrDefault(node, Set.of()).contains(target);
+        }
+
+        @Override
+        public int commonCount(int node1, int node2) {
+            Set<Integer> row2 = rows.getOrDefault(node2, Set.of());
+            return (int) rows.getOrDefault(node1, Set.of()).stream()
+                    .filter(row2::contains)
+                    .count();
+        }
+    }
+
+    private static final class PrimitiveAdjacency implements Adjacency {
+        private final IntAdjacency adjacency = new IntAdjacency();
+
+        @Override
+        public boolean add(int node, int target) {
+            return adjacency.add(node, target);
+        }
+
+        @Override
+        public boolean remove(int node, int target) {
+            return adjacency.remove(node, target);
+        }
+
+        @Override
+        public boolean contains(int node, int target) {
+            return adjacency.contains(node, target);
+        }
+
+        @Override
+        public int commonCount(int node1, int node2) {
+            return IntAdjacency.intersect(adjacency.get(node1), adjacency.get(node2)).length;
+        }
+    }
+}
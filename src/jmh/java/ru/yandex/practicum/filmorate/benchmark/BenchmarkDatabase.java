@@ -0,0 +1,225 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Встроенная H2 со схемой приложения и генератор тестовых данных для бенчмарков.
+ * Одни и те же данные (при одинаковом seed) заливаются и в БД, и в in-memory хранилища.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    private static final int BATCH_SIZE = 1000;
+    private static final int GENRES_COUNT = 6;
+    private static final int MPA_COUNT = 5;
+
+    private final EmbeddedDatabase dataSource;
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public BenchmarkDatabase() {
+        this(new EmbeddedDatabaseBuilder().generateUniqueName(true));
+    }
+
+    // База jdbc:h2:mem:<name>, к которой может подключиться и запущенное приложение (пользователь sa без пароля)
+    public BenchmarkDatabase(String name) {
+        this(new EmbeddedDatabaseBuilder().setName(name));
+    }
+
+    private BenchmarkDatabase(EmbeddedDatabaseBuilder builder) {
+        dataSource = builder
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("schema.sql")
+                .addScript("data.sql")
+                .build();
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    public NamedParameterJdbcTemplate jdbc() {
+        return jdbc;
+    }
+
+    // Заливает данные напрямую пакетными INSERT, id пользователей и фильмов идут с 1 подряд
+    public void seed(DataSet data) {
+        JdbcTemplate template = jdbc.getJdbcTemplate();
+
+        BatchInsert users = new BatchInsert(template,
+                "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)");
+        for (int i = 1; i <= data.users(); i++) {
+            users.add("user" + i + "@mail.ru", "user" + i, "User " + i, java.sql.Date.valueOf(birthday(i)));
+        }
+        users.flush();
+
+        BatchInsert films = new BatchInsert(template, """
+                INSERT INTO films(name, description, release_date, release_year, duration, mpa_rating_id)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """);
+        for (int i = 1; i <= data.films(); i++) {
+            films.add("Film " + i, "Description " + i, java.sql.Date.valueOf(releaseDate(i)),
+                    releaseDate(i).getYear(), 90 + i % 60, i % MPA_COUNT + 1);
+        }
+        films.flush();
+
+        BatchInsert filmGenres = new BatchInsert(template,
+                "INSERT INTO film_genres(film_id, genre_id) VALUES (?, ?)");
+        for (int filmId = 1; filmId <= data.films(); filmId++) {
+            for (int genreId : genreIds(filmId)) {
+                filmGenres.add(filmId, genreId);
+            }
+        }
+        filmGenres.flush();
+
+        Random random = new Random(data.seed());
+        BatchInsert likes = new BatchInsert(template, "INSERT INTO likes(film_id, user_id) VALUES (?, ?)");
+        for (int userId = 1; userId <= data.users(); userId++) {
+            for (int filmId : likedFilms(random, data)) {
+                likes.add(filmId, userId);
+            }
+        }
+        likes.flush();
+        template.update("""
+                UPDATE films f
+                SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+                """);
+        template.update("""
+                UPDATE film_genres fg
+                SET likes_count = (SELECT f.likes_count FROM films f WHERE f.id = fg.film_id)
+                """);
+
+        BatchInsert friends = new BatchInsert(template, "INSERT INTO friends(user_id, friend_id) VALUES (?, ?)");
+        for (int userId = 1; userId <= data.users(); userId++) {
+            for (int friendId : friends(random, userId, data)) {
+                friends.add(userId, friendId);
+            }
+        }
+        friends.flush();
+    }
+
+    // Заливает те же данные через API хранилищ (для in-memory реализаций)
+    public static void seed(DataSet data, FilmStorage filmStorage, UserStorage userStorage) {
+        for (int i = 1; i <= data.users(); i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(birthday(i));
+            userStorage.create(user);
+        }
+
+        for (int i = 1; i <= data.films(); i++) {
+            filmStorage.create(film(i));
+        }
+
+        Random random = new Random(data.seed());
+        for (int userId = 1; userId <= data.users(); userId++) {
+            for (int filmId : likedFilms(random, data)) {
+                filmStorage.addLike(filmId, userId);
+            }
+        }
+        for (int userId = 1; userId <= data.users(); userId++) {
+            for (int friendId : friends(random, userId, data)) {
+                userStorage.addFriend(userId, friendId);
+            }
+        }
+    }
+
+    // Поля и жанры i-го сгенерированного фильма, без id
+    public static Film film(int i) {
+        Film film = new Film();
+        film.setName("Film " + i);
+        film.setDescription("Description " + i);
+        film.setReleaseDate(releaseDate(i));
+        film.setDuration(90 + i % 60);
+        film.setMpa(new MpaRating(i % MPA_COUNT + 1, null, null));
+        Set<Genre> genres = new HashSet<>();
+        for (int genreId : genreIds(i)) {
+            genres.add(new Genre(genreId, null));
+        }
+        film.setGenres(genres);
+        return film;
+    }
+
+    @Override
+    public void close() {
+        dataSource.shutdown();
+    }
+
+    private static LocalDate birthday(int i) {
+        return LocalDate.of(1970, 1, 1).plusDays(i % 15000);
+    }
+
+    private static LocalDate releaseDate(int i) {
+        return LocalDate.of(1950, 1, 1).plusDays(i % 25000);
+    }
+
+    private static int[] genreIds(int filmId) {
+        int first = filmId % GENRES_COUNT + 1;
+        int second = (filmId / GENRES_COUNT) % GENRES_COUNT + 1;
+        return first == second ? new int[]{first} : new int[]{first, second};
+    }
+
+    // Квадрат равномерной величины смещает лайки к фильмам с малыми id - есть явные лидеры
+    private static Set<Integer> likedFilms(Random random, DataSet data) {
+        Set<Integer> result = new HashSet<>();
+        int likes = Math.min(data.likesPerUser(), data.films());
+        while (result.size() < likes) {
+            double r = random.nextDouble();
+            result.add((int) (data.films() * r * r) + 1);
+        }
+        return result;
+    }
+
+    private static Set<Integer> friends(Random random, int userId, DataSet data) {
+        Set<Integer> result = new HashSet<>();
+        int friends = Math.min(data.friendsPerUser(), data.users() - 1);
+        while (result.size() < friends) {
+            int friendId = random.nextInt(data.users()) + 1;
+            if (friendId != userId) {
+                result.add(friendId);
+            }
+        }
+        return result;
+    }
+
+    private static final class BatchInsert {
+        private final JdbcTemplate template;
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>();
+
+        private BatchInsert(JdbcTemplate template, String sql) {
+            this.template = template;
+            this.sql = sql;
+        }
+
+        private void add(Object... row) {
+            rows.add(row);
+            if (rows.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (!rows.isEmpty()) {
+                template.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+    }
+
+    public record DataSet(int users, int films, int likesPerUser, int friendsPerUser, long seed) {
+    }
+}
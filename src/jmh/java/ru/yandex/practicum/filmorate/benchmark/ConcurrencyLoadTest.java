@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный тест: приложение запускается на платформенных, затем на виртуальных потоках,
+ * и в каждом режиме получает concurrency одновременных запросов /films/popular и /users/{id}/friends.
+ * Для каждого режима печатаются пропускная способность, задержки, число ответов 503 от ограничителя
+ * и максимум одновременно живых платформенных потоков JVM.
+ * Запуск: mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.ConcurrencyLoadTest -Dexec.args="2000 20"
+ */
+public class ConcurrencyLoadTest {
+    private static final BenchmarkDatabase.DataSet DATA = new BenchmarkDatabase.DataSet(10_000, 1_000, 20, 50, 42);
+    private static final int WARMUP_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            String mode = virtualThreads ? "virtual" : "platform";
+            try (BenchmarkDatabase database = new BenchmarkDatabase("load-" + mode)) {
+                database.seed(DATA);
+                ConfigurableApplicationContext app = start(mode, virtualThreads);
+                try {
+                    int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                    run(port, concurrency, WARMUP_SECONDS);
+                    ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+                    Result result = run(port, concurrency, seconds);
+                    result.print(mode, concurrency, seconds);
+                } finally {
+                    app.close();
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mode, boolean virtualThreads) {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1",
+                        "spring.datasource.password=",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "filmorate.storage=jdbc",
+                        "filmorate.likes.write-behind.enabled=false",
+                        "logging.level.root=WARN",
+                        "logging.level.org.zalando.logbook=OFF")
+                .run();
+    }
+
+    // Держит concurrency запросов в полёте в течение seconds секунд
+    private static Result run(int port, int concurrency, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        Result result = new Result();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            long started = System.nanoTime();
+            client.sendAsync(request(port), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        result.record(response == null ? -1 : response.statusCode(), System.nanoTime() - started);
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(concurrency);
+        return result;
+    }
+
+    private static HttpRequest request(int port) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String path = random.nextBoolean()
+                ? "/films/popular?count=10"
+                : "/users/" + (random.nextInt(DATA.users()) + 1) + "/friends";
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static final class Result {
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        private void record(int status, long latencyNanos) {
+            switch (status) {
+                case 200 -> ok.increment();
+                case 503 -> rejected.increment();
+                default -> failed.increment();
+            }
+            latencies.add(latencyNanos);
+        }
+
+        private void print(String mode, int concurrency, int seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            System.out.printf("%-8s concurrency=%d: %.0f запросов/с, 200: %d, 503: %d, ошибки: %d, "
+                            + "p50 %.1f мс, p99 %.1f мс, платформенных потоков максимум %d%n",
+                    mode, concurrency, (double) ok.sum() / seconds, ok.sum(), rejected.sum(), failed.sum(),
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99), threads.getPeakThreadCount());
+        }
+
+        private static double percentileMillis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = Math.min(sorted.length - 1, (int) (sorted.length * percentile));
+            return sorted[index] / 1_000_000.0;
+        }
+    }
+}
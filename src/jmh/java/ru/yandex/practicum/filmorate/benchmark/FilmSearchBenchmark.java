@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка поиска по FilmSearchIndex на сгенерированном каталоге: слова составлены из русских слогов,
+ * частые слова встречаются намного чаще редких. Для сравнения - проход по всем текстам с contains,
+ * как LIKE '%x%' по таблице films. Память индекса печатается в setUp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FilmSearchBenchmark {
+    private static final String[] SYLLABLES = {
+            "ка", "ро", "ми", "ла", "то", "на", "ве", "сё", "дру", "жи", "мо", "ре", "зве", "зда", "ле", "со",
+            "ко", "ры", "ба", "го", "ду", "ше", "пи", "фи", "ль", "тё", "ни", "ву", "ста", "кри"
+    };
+    private static final String[] ENDINGS = {"", "а", "ы", "ой", "ами", "ого", "е", "ом"};
+
+    @Param({"1000000"})
+    public int films;
+
+    @Param({"50000"})
+    public int vocabulary;
+
+    @Param({"10"})
+    public int count;
+
+    private String[] words;
+    private String[] texts;
+    private FilmSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int n = i; n > 0 || word.isEmpty(); n /= SYLLABLES.length) {
+                word.append(SYLLABLES[n % SYLLABLES.length]);
+            }
+            words[i] = word.toString();
+        }
+
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(new DataVersions());
+        texts = new String[films];
+        for (int i = 0; i < films; i++) {
+            Film film = new Film();
+            film.setName(text(random, 1 + random.nextInt(4)));
+            film.setDescription(text(random, 10 + random.nextInt(20)));
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            filmStorage.create(film);
+            texts[i] = (film.getName() + " " + film.getDescription()).toLowerCase();
+        }
+
+        long before = usedHeap();
+        index = new FilmSearchIndex(filmStorage);
+        index.build();
+        System.out.printf("%nИндекс: %d фильмов, %.1f МБ кучи%n", films, (usedHeap() - before) / 1024.0 / 1024);
+    }
+
+    @Benchmark
+    public int[] rareWord() {
+        return index.search(words[vocabulary - 1 - ThreadLocalRandom.current().nextInt(vocabulary / 2)], count);
+    }
+
+    @Benchmark
+    public int[] frequentWord() {
+        return index.search(words[ThreadLocalRandom.current().nextInt(10)], count);
+    }
+
+    @Benchmark
+    public int[] threeWords() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.search(word(random) + " " + word(random) + " " + word(random), count);
+    }
+
+    @Benchmark
+    public int containsScan() {
+        String word = word(ThreadLocalRandom.current());
+        int found = 0;
+        for (String text : texts) {
+            if (text.contains(word) && ++found == count) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    private String text(Random random, int wordCount) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(word(random)).append(ENDINGS[random.nextInt(ENDINGS.length)]);
+        }
+        return text.toString();
+    }
+
+    // Частота слова падает с номером: первые слова словаря встречаются в большинстве фильмов
+    private String word(Random random) {
+        return words[random.nextInt(random.nextInt(vocabulary) + 1)];
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmStorageBenchmark {
+    private static final int LIKELESS_USERS = 1000;
+
+    @Param({"jdbc", "memory"})
+    public String backend;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"10000"})
+    public int films;
+
+    @Param({"20"})
+    public int likesPerUser;
+
+    private BenchmarkDatabase database;
+    private FilmStorage filmStorage;
+    // Пользователи без лайков в данных: лайк такого пользователя до вызова addAndDeleteLike точно отсутствует
+    private int[] likelessUserIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.DataSet data = new BenchmarkDatabase.DataSet(users, films, likesPerUser, 0, 42);
+        DataVersions dataVersions = new DataVersions();
+        UserStorage userStorage;
+        switch (backend) {
+            case "jdbc" -> {
+                database = new BenchmarkDatabase();
+                database.seed(data);
+                filmStorage = new FilmDbStorage(database.jdbc(), new FilmRowMapper(),
+                        new GenreDbStorage(database.jdbc(), new GenreRowMapper(), dataVersions), dataVersions);
+                userStorage = new UserDbStorage(database.jdbc(), new UserRowMapper(), dataVersions);
+            }
+            case "memory" -> {
+                InMemoryFilmStorage inMemoryFilmStorage = new InMemoryFilmStorage(dataVersions);
+                userStorage = new InMemoryUserStorage(inMemoryFilmStorage);
+                BenchmarkDatabase.seed(data, inMemoryFilmStorage, userStorage);
+                filmStorage = inMemoryFilmStorage;
+            }
+            default -> throw new IllegalArgumentException("Неизвестное хранилище: " + backend);
+        }
+
+        likelessUserIds = new int[LIKELESS_USERS];
+        for (int i = 0; i < LIKELESS_USERS; i++) {
+            User user = new User();
+            user.setEmail("likeless" + i + "@mail.ru");
+            user.setLogin("likeless" + i);
+            user.setName("Likeless " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            likelessUserIds[i] = userStorage.create(user).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public List<Film> getPopular() {
+        return filmStorage.getPopular(10);
+    }
+
+    @Benchmark
+    public List<Film> getPopularByGenre() {
+        return filmStorage.getPopular(10, ThreadLocalRandom.current().nextInt(6) + 1, null, null);
+    }
+
+    @Benchmark
+    public List<Film> getPopularByMpaAndYear() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmStorage.getPopular(10, null, random.nextInt(5) + 1, 1950 + random.nextInt(60));
+    }
+
+    @Benchmark
+    public Optional<Film> getById() {
+        return filmStorage.getById(randomFilmId());
+    }
+
+    @Benchmark
+    public boolean exists() {
+        return filmStorage.exists(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> getAllPage() {
+        return filmStorage.getAll(randomFilmId(), 100);
+    }
+
+    // Лайк каждый раз новый и сразу удаляется: лайки из данных не трогаются, счётчики не уплывают
+    @Benchmark
+    public void addAndDeleteLike() {
+        int filmId = randomFilmId();
+        int userId = likelessUserIds[ThreadLocalRandom.current().nextInt(LIKELESS_USERS)];
+        filmStorage.addLike(filmId, userId);
+        filmStorage.deleteLike(filmId, userId);
+    }
+
+    // Созданный фильм удаляется, чтобы каталог не рос от итерации к итерации
+    @Benchmark
+    public void createAndDelete() {
+        Film created = filmStorage.create(BenchmarkDatabase.film(randomFilmId()));
+        filmStorage.delete(created.getId());
+    }
+
+    // Фильм перезаписывается теми же полями и жанрами, что были при заливке
+    @Benchmark
+    public Film update() {
+        int filmId = randomFilmId();
+        Film film = BenchmarkDatabase.film(filmId);
+        film.setId(filmId);
+        return filmStorage.update(film);
+    }
+
+    @Benchmark
+    public void forEach(Blackhole blackhole) {
+        filmStorage.forEach(blackhole::consume);
+    }
+
+    private int randomFilmId() {
+        return ThreadLocalRandom.current().nextInt(films) + 1;
+    }
+}
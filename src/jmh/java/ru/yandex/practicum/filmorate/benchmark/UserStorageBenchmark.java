@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserStorageBenchmark {
+    @Param({"jdbc", "memory"})
+    public String backend;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"50"})
+    public int friendsPerUser;
+
+    private BenchmarkDatabase database;
+    private UserStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.DataSet data = new BenchmarkDatabase.DataSet(users, 0, 0, friendsPerUser, 42);
+        switch (backend) {
+            case "jdbc" -> {
+                database = new BenchmarkDatabase();
+                database.seed(data);
+                userStorage = new UserDbStorage(database.jdbc(), new UserRowMapper(), new DataVersions());
+            }
+            case "memory" -> {
+                InMemoryFilmStorage inMemoryFilmStorage = new InMemoryFilmStorage(new DataVersions());
+                InMemoryUserStorage inMemoryUserStorage = new InMemoryUserStorage(inMemoryFilmStorage);
+                BenchmarkDatabase.seed(data, inMemoryFilmStorage, inMemoryUserStorage);
+                userStorage = inMemoryUserStorage;
+            }
+            default -> throw new IllegalArgumentException("Неизвестное хранилище: " + backend);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<User> getById() {
+        return userStorage.getById(randomUserId());
+    }
+
+    @Benchmark
+    public boolean exists() {
+        return userStorage.exists(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getAllPage() {
+        return userStorage.getAll(randomUserId(), 100);
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return userStorage.getFriends(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        return userStorage.getCommonFriends(randomUserId(), randomUserId());
+    }
+
+    @Benchmark
+    public void addAndDeleteFriend() {
+        int userId = randomUserId();
+        int friendId = randomUserId();
+        if (userId == friendId) {
+            return;
+        }
+        userStorage.addFriend(userId, friendId);
+        userStorage.deleteFriend(userId, friendId);
+    }
+
+    private int randomUserId() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+}
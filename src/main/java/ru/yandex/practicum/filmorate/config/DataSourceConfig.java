@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.CachingNamedParameterJdbcTemplate;
+
+/**
+ * Пул соединений и NamedParameterJdbcTemplate хранилищ собираются из DbProperties (filmorate.db.*)
+ * вместо spring.datasource.hikari.*; адрес БД и учётные данные по-прежнему берутся из spring.datasource.*.
+ * Метрики пула (hikaricp.connections.*) Spring Boot Actuator публикует сам,
+ * здесь добавляются метрики кэша разбора запросов.
+ */
+@Configuration
+@EnableConfigurationProperties(DbProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties, DbProperties dbProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+
+        DbProperties.Pool pool = dbProperties.getPool();
+        dataSource.setPoolName("filmorate");
+        dataSource.setMaximumPoolSize(pool.getMaximumSize());
+        dataSource.setMinimumIdle(pool.getMinimumIdle());
+        dataSource.setConnectionTimeout(pool.getConnectionTimeout().toMillis());
+        dataSource.setIdleTimeout(pool.getIdleTimeout().toMillis());
+        dataSource.setMaxLifetime(pool.getMaxLifetime().toMillis());
+        // Хранилища выполняют несколько десятков разных запросов - больше, чем 8 команд в кэше H2 по умолчанию
+        dataSource.addDataSourceProperty("QUERY_CACHE_SIZE",
+                String.valueOf(dbProperties.getStatementCache().getH2QueryCacheSize()));
+
+        return dataSource;
+    }
+
+    @Bean
+    public CachingNamedParameterJdbcTemplate namedParameterJdbcTemplate(JdbcTemplate jdbcTemplate,
+                                                                        DbProperties dbProperties) {
+        return new CachingNamedParameterJdbcTemplate(jdbcTemplate,
+                dbProperties.getStatementCache().getParseCacheLimit());
+    }
+
+    @Bean
+    public MeterBinder parsedSqlCacheMetrics(CachingNamedParameterJdbcTemplate jdbc) {
+        return registry -> {
+            FunctionCounter.builder("filmorate.jdbc.parsed.sql", jdbc, CachingNamedParameterJdbcTemplate::hits)
+                    .description("Обращения к кэшу разбора запросов")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("filmorate.jdbc.parsed.sql", jdbc, CachingNamedParameterJdbcTemplate::misses)
+                    .description("Обращения к кэшу разбора запросов")
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("filmorate.jdbc.parsed.sql.hit.ratio", jdbc, CachingNamedParameterJdbcTemplate::hitRatio)
+                    .description("Доля попаданий в кэш разбора запросов")
+                    .register(registry);
+            Gauge.builder("filmorate.jdbc.parsed.sql.size", jdbc, CachingNamedParameterJdbcTemplate::size)
+                    .description("Запросов в кэше разбора")
+                    .register(registry);
+        };
+    }
+}
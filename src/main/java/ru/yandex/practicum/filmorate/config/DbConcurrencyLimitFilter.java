@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Ограничивает число одновременно обрабатываемых запросов числом соединений в пуле БД.
+ * С виртуальными потоками (spring.threads.virtual.enabled=true) Tomcat больше не ограничивает
+ * параллельность размером своего пула, и тысячи запросов ждали бы соединение в Hikari,
+ * получая ошибку по его connection-timeout. Здесь лишние запросы ждут разрешение
+ * не дольше acquire-timeout-ms и получают 503 с Retry-After, если пул всё это время занят.
+ * Ожидание на семафоре для виртуального потока почти ничего не стоит.
+ * Выгрузка /films/export пишет ответ после выхода из фильтра и под ограничение не попадает.
+ * Запросы, которые отвечаются без соединения с БД (actuator, справочники из кэша, общий топ из кэша,
+ * 304 по актуальному ETag), через семафор не проходят и под нагрузкой не получают 503.
+ */
+@Component
+@ConditionalOnExpression("'${filmorate.storage:jdbc}' != 'memory'")
+@Slf4j
+public class DbConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final List<String> NO_DB_PATHS = List.of("/actuator", "/genres", "/mpa");
+    // Обработчики, которые сверяют If-None-Match с версией фильмов до обращения к хранилищу
+    private static final Pattern FILMS_ETAG_PATHS = Pattern.compile("/films(/\\d+|/popular)?");
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final ObjectMapper objectMapper;
+    private final DataVersions dataVersions;
+
+    public DbConcurrencyLimitFilter(DataSource dataSource,
+                                    DataVersions dataVersions,
+                                    ObjectMapper objectMapper,
+                                    @Value("${filmorate.db-concurrency.max-requests:0}") int maxRequests,
+                                    @Value("${filmorate.db-concurrency.acquire-timeout-ms:2000}") long acquireTimeoutMs) {
+        int limit = maxRequests > 0 ? maxRequests : poolSize(dataSource);
+        this.permits = new Semaphore(limit, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.objectMapper = objectMapper;
+        this.dataVersions = dataVersions;
+        log.info("Одновременно обрабатываемых запросов к БД не больше {}", limit);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            log.warn("Пул соединений занят дольше {} мс, запрос {} {} отклонён",
+                    acquireTimeoutMs, request.getMethod(), request.getRequestURI());
+            reject(response);
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (NO_DB_PATHS.stream().anyMatch(prefix -> path.equals(prefix) || path.startsWith(prefix + "/"))) {
+            return true;
+        }
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return false;
+        }
+        // Общий топ отдаётся готовым JSON из PopularFilmsCache; пересборка устаревшей записи
+        // в потоке запроса ждёт соединение уже в Hikari, по его connection-timeout
+        if (path.equals("/films/popular") && request.getParameter("genreId") == null
+                && request.getParameter("mpaId") == null && request.getParameter("year") == null) {
+            return true;
+        }
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        return ifNoneMatch != null && FILMS_ETAG_PATHS.matcher(path).matches()
+                && ifNoneMatch.contains(dataVersions.etag(DataVersions.Resource.FILMS));
+    }
+
+    int available() {
+        return permits.availablePermits();
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(),
+                Map.of("error", "Сервер перегружен, повторите запрос позже"));
+    }
+
+    // Без явной настройки - столько запросов, сколько соединений в пуле Hikari
+    private static int poolSize(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            return hikari.getMaximumPoolSize();
+        }
+        throw new IllegalStateException(
+                "Пул соединений не Hikari - задайте filmorate.db-concurrency.max-requests");
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Настройки пула соединений и кэшей запросов, filmorate.db.*; применяются в DataSourceConfig
+@Data
+@ConfigurationProperties("filmorate.db")
+public class DbProperties {
+    private final Pool pool = new Pool();
+    private final StatementCache statementCache = new StatementCache();
+
+    @Data
+    public static class Pool {
+        // По размеру пула DbConcurrencyLimitFilter ограничивает число одновременных запросов
+        private int maximumSize = 10;
+        // Равно maximumSize - пул фиксированного размера, соединения не создаются под нагрузкой
+        private int minimumIdle = 10;
+        private Duration connectionTimeout = Duration.ofSeconds(30);
+        private Duration idleTimeout = Duration.ofMinutes(10);
+        private Duration maxLifetime = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class StatementCache {
+        // Сколько текстов запросов хранит кэш разбора именованных параметров
+        private int parseCacheLimit = 256;
+        // QUERY_CACHE_SIZE H2: сколько подготовленных команд хранит каждое соединение (по умолчанию в H2 - 8)
+        private int h2QueryCacheSize = 64;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.CachedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.CachedUserStorage;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики каждого публичного метода хранилищ: FilmStorage, UserStorage и наследников BaseDbStorage
+ * (в том числе GenreDbStorage и MpaDbStorage). Новые методы и хранилища попадают под замер без изменений здесь.
+ * <ul>
+ *     <li>filmorate.storage.calls - таймер вызовов с тегами storage, method, backend и exception;</li>
+ *     <li>filmorate.storage.rows - распределение числа строк в результате: размер списка,
+ *     массива id или Optional (0 или 1).</li>
+ * </ul>
+ * backend совпадает со значением filmorate.storage: jdbc, memory или cached-jdbc. В режиме cached-jdbc
+ * замеряется и кэширующее хранилище, и FilmDbStorage/UserDbStorage под ним - видно, сколько вызовов дошло до БД.
+ * Вызовы внутри одного хранилища (this.addLike из addLikes) прокси не проходят и отдельно не считаются.
+ */
+@Aspect
+@Component
+public class StorageMetricsAspect {
+    static final String CALLS = "filmorate.storage.calls";
+    static final String ROWS = "filmorate.storage.rows";
+
+    private final MeterRegistry registry;
+    // Метры успешных вызовов по классу и методу: без поиска в реестре на каждый вызов.
+    // Распределение строк регистрируется только для методов, которые возвращают набор строк
+    private final Map<MeterKey, Timer> callTimers = new ConcurrentHashMap<>();
+    private final Map<MeterKey, DistributionSummary> rowSummaries = new ConcurrentHashMap<>();
+
+    public StorageMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage..*.*(..))"
+            + " && (target(ru.yandex.practicum.filmorate.storage.film.FilmStorage)"
+            + " || target(ru.yandex.practicum.filmorate.storage.user.UserStorage)"
+            + " || target(ru.yandex.practicum.filmorate.storage.BaseDbStorage))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?> storage = joinPoint.getTarget().getClass();
+        String method = joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable ex) {
+            callsTimer(tags(storage, method).and("exception", ex.getClass().getSimpleName()))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw ex;
+        }
+
+        MeterKey key = new MeterKey(storage, method);
+        callTimers.computeIfAbsent(key, k -> callsTimer(tags(k.storage(), k.method()).and("exception", "none")))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        int rows = rows(result);
+        if (rows >= 0) {
+            rowSummaries.computeIfAbsent(key, this::rowsSummary).record(rows);
+        }
+        return result;
+    }
+
+    // Успешные и неудачные вызовы - одна метрика с одинаковыми тегами и гистограммой, как требует Prometheus
+    private Timer callsTimer(Tags tags) {
+        return Timer.builder(CALLS)
+                .description("Вызовы методов хранилищ")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary rowsSummary(MeterKey key) {
+        return DistributionSummary.builder(ROWS)
+                .description("Строк в результате метода хранилища")
+                .baseUnit("rows")
+                .tags(tags(key.storage(), key.method()))
+                .publishPercentileHistogram()
+                .maximumExpectedValue(10_000.0)
+                .register(registry);
+    }
+
+    private static Tags tags(Class<?> storage, String method) {
+        return Tags.of("storage", storage.getSimpleName(), "method", method, "backend", backend(storage));
+    }
+
+    private static String backend(Class<?> storage) {
+        if (BaseDbStorage.class.isAssignableFrom(storage)) {
+            return "jdbc";
+        }
+        if (CachedFilmStorage.class.isAssignableFrom(storage) || CachedUserStorage.class.isAssignableFrom(storage)) {
+            return "cached-jdbc";
+        }
+        return "memory";
+    }
+
+    // -1 - результат не набор строк (void, boolean, сущность после записи)
+    private static int rows(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result instanceof int[] ids) {
+            return ids.length;
+        }
+        return -1;
+    }
+
+    private record MeterKey(Class<?> storage, String method) {
+    }
+}
@@ -2,6 +2,8 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,29 +14,50 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.PopularFilmsCache;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 
-import java.util.Collection;
 import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService filmService;
+    private final DataVersions dataVersions;
 
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, DataVersions dataVersions) {
         this.filmService = filmService;
+        this.dataVersions = dataVersions;
     }
 
+    // Если ETag клиента совпадает с версией фильмов, ответ 304 и запрос в хранилище не выполняется
     @GetMapping("/{id}")
-    public Film getById(@PathVariable int id) {
+    public Film getById(@PathVariable int id, WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return filmService.getById(id);
     }
 
+    // Страница по id; limit от 1 до FilmService.MAX_PAGE_SIZE, следующая страница - в заголовке Link
     @GetMapping
-    public Collection<Film> all() {
-        return filmService.all();
+    public ResponseEntity<List<Film>> all(@RequestParam(defaultValue = "0") int afterId,
+                                          @RequestParam(defaultValue = "100") int limit,
+                                          WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return PageLinks.page(filmService.all(afterId, limit), limit, Film::getId);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody export() {
+        return filmService::export;
     }
 
     @PostMapping
@@ -43,6 +66,12 @@ public class FilmController {
         return filmService.create(newObject);
     }
 
+    // Элементы проверяются по отдельности: ошибка в одном не отменяет остальные
+    @PostMapping("/batch")
+    public List<BatchItemResult> saveBatch(@RequestBody List<Film> films) {
+        return filmService.saveBatch(films);
+    }
+
     @PutMapping
     public Film update(@Valid @RequestBody Film filmToUpdate) {
         return filmService.update(filmToUpdate);
@@ -66,9 +95,43 @@ public class FilmController {
         filmService.deleteLike(id, userId);
     }
 
+    // Общий топ берётся готовым из кэша; ETag - версия, по которой он собран, а не текущая,
+    // иначе клиент сохранил бы устаревший ответ с новым ETag. Топ с фильтрами читается из хранилища
     @GetMapping("/popular")
-    public List<Film> getPopular(@RequestParam(defaultValue = "10") int count) {
-        return filmService.getPopular(count);
+    public ResponseEntity<?> getPopular(@RequestParam(defaultValue = "10") int count,
+                                        @RequestParam(required = false) Integer genreId,
+                                        @RequestParam(required = false) Integer mpaId,
+                                        @RequestParam(required = false) Integer year,
+                                        WebRequest request) {
+        if (genreId != null || mpaId != null || year != null) {
+            if (notModified(request)) {
+                return null;
+            }
+            return ResponseEntity.ok(filmService.getPopular(count, genreId, mpaId, year));
+        }
+
+        PopularFilmsCache.Entry popular = filmService.getPopularJson(count);
+        if (request.checkNotModified(dataVersions.etag(DataVersions.Resource.FILMS, popular.version()))) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(popular.json());
+    }
+
+    @GetMapping("/search")
+    public List<Film> search(@RequestParam String q, @RequestParam(defaultValue = "10") int count) {
+        return filmService.search(q, count);
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilar(@PathVariable int id, @RequestParam(defaultValue = "10") int count) {
+        return filmService.getSimilar(id, count);
+    }
+
+    // Версия читается до запроса: запись во время запроса лишь заставит клиента перечитать ответ ещё раз
+    private boolean notModified(WebRequest request) {
+        return request.checkNotModified(dataVersions.etag(DataVersions.Resource.FILMS));
     }
 
 }
@@ -5,8 +5,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 
 import java.util.Collection;
 
@@ -15,16 +17,28 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class GenreController {
     private final GenreService genreService;
+    private final DataVersions dataVersions;
 
     @GetMapping
-    public Collection<Genre> all() {
+    public Collection<Genre> all(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return genreService.getAll();
     }
 
     @GetMapping("/{id}")
-    public Genre byId(@PathVariable int id) {
+    public Genre byId(@PathVariable int id, WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return genreService.getById(id);
     }
 
+    // Справочник меняется только при перечитывании из БД - почти все повторные запросы получают 304
+    private boolean notModified(WebRequest request) {
+        return request.checkNotModified(dataVersions.etag(DataVersions.Resource.GENRES));
+    }
+
 
 }
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.GraphImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Тело читается из потока запроса построчно, без разбора всего файла в память
+@RestController
+@RequestMapping("/import")
+public class ImportController {
+    private final GraphImportService graphImportService;
+
+    public ImportController(GraphImportService graphImportService) {
+        this.graphImportService = graphImportService;
+    }
+
+    @PostMapping(value = "/likes", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ImportReport importLikes(InputStream body,
+                                    @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) throws IOException {
+        return graphImportService.importLikes(body, contentType);
+    }
+
+    @PostMapping(value = "/friends", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ImportReport importFriends(InputStream body,
+                                      @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) throws IOException {
+        return graphImportService.importFriends(body, contentType);
+    }
+}
@@ -5,8 +5,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.service.MpaService;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 
 import java.util.List;
 
@@ -15,15 +17,26 @@ import java.util.List;
 @RequiredArgsConstructor
 public class MpaController {
     private final MpaService mpaService;
+    private final DataVersions dataVersions;
 
     @GetMapping
-    List<MpaRating> all() {
+    List<MpaRating> all(WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return mpaService.getAll();
     }
 
     @GetMapping("/{id}")
-    MpaRating byId(@PathVariable int id) {
+    MpaRating byId(@PathVariable int id, WebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return mpaService.getById(id);
     }
 
+    private boolean notModified(WebRequest request) {
+        return request.checkNotModified(dataVersions.etag(DataVersions.Resource.MPA));
+    }
+
 }
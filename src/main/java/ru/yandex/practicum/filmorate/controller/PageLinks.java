@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Продолжение keyset-пагинации: полная страница отдаётся с заголовком {@code Link: <...>; rel="next"},
+ * в котором afterId - id последнего элемента. Неполная страница - последняя, ссылки нет.
+ */
+final class PageLinks {
+
+    private PageLinks() {
+    }
+
+    static <T> ResponseEntity<List<T>> page(List<T> items, int limit, Function<T, Integer> idOf) {
+        if (items.size() < limit) {
+            return ResponseEntity.ok(items);
+        }
+
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("afterId", idOf.apply(items.get(items.size() - 1)))
+                .replaceQueryParam("limit", limit)
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(items);
+    }
+}
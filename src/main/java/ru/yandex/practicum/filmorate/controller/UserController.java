@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -9,26 +10,33 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
-import java.util.Collection;
 import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final RecommendationService recommendationService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
     }
 
+    // Страница по id; limit от 1 до UserService.MAX_PAGE_SIZE, следующая страница - в заголовке Link
     @GetMapping
-    public Collection<User> all() {
-        return userService.all();
+    public ResponseEntity<List<User>> all(@RequestParam(defaultValue = "0") int afterId,
+                                          @RequestParam(defaultValue = "100") int limit) {
+        return PageLinks.page(userService.all(afterId, limit), limit, User::getId);
     }
 
     @GetMapping("/{id}")
@@ -42,6 +50,11 @@ public class UserController {
         return userService.create(newUser);
     }
 
+    @PostMapping("/batch")
+    public List<BatchItemResult> saveBatch(@RequestBody List<User> users) {
+        return userService.saveBatch(users);
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void delete(@PathVariable int id) {
@@ -76,4 +89,15 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable int id, @RequestParam(defaultValue = "10") int count) {
+        return userService.getFriendSuggestions(id, count);
+    }
+
+    // Фильмы, которые лайкнули друзья пользователя, по числу таких друзей
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable int id, @RequestParam(defaultValue = "10") int count) {
+        return recommendationService.getRecommendations(id, count);
+    }
+
 }
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+// Результат для одного элемента пакетного запроса; index - позиция элемента в запросе
+@Data
+public class BatchItemResult {
+    private final int index;
+    private final Status status;
+    private final Integer id;
+    private final String error;
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        REJECTED
+    }
+
+    public static BatchItemResult created(int index, int id) {
+        return new BatchItemResult(index, Status.CREATED, id, null);
+    }
+
+    public static BatchItemResult updated(int index, int id) {
+        return new BatchItemResult(index, Status.UPDATED, id, null);
+    }
+
+    public static BatchItemResult rejected(int index, Integer id, String error) {
+        return new BatchItemResult(index, Status.REJECTED, id, error);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+// userId добавил friendId в друзья, как строка таблицы friends
+@Data
+public class Friendship {
+    private final int userId;
+    private final int friendId;
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Итог импорта связей: rows - непустые строки потока, accepted - прошедшие проверку и отправленные в БД
+// (уже существующие связи при этом не дублируются). В rejectedRows - только первые отклонённые строки
+@Data
+public class ImportReport {
+    private long rows;
+    private long accepted;
+    private long rejected;
+    private final List<RejectedRow> rejectedRows = new ArrayList<>();
+
+    @Data
+    public static class RejectedRow {
+        private final long line;
+        private final String row;
+        private final String error;
+    }
+}
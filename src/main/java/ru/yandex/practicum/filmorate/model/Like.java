@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+@Data
+public class Like {
+    private final int filmId;
+    private final int userId;
+}
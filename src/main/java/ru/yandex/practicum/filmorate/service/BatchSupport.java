@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Общие проверки пакетных запросов /films/batch и /users/batch
+final class BatchSupport {
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private BatchSupport() {
+    }
+
+    static void checkSize(List<?> items) {
+        if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("В пакете должно быть от 1 до " + MAX_BATCH_SIZE + " элементов");
+        }
+    }
+
+    // Нарушения аннотаций валидации элемента одной строкой; null, если их нет
+    static String violations(Validator validator, Object item) {
+        if (item == null) {
+            return "Пустой элемент пакета";
+        }
+        String errors = validator.validate(item).stream()
+                .sorted(Comparator.comparing((ConstraintViolation<Object> violation) ->
+                        violation.getPropertyPath().toString()))
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .collect(Collectors.joining("; "));
+        return errors.isEmpty() ? null : errors;
+    }
+}
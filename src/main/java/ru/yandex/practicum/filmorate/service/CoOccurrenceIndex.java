@@ -0,0 +1,360 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.IntAdjacency;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс совместных лайков для /films/{id}/similar: для каждого фильма до max-neighbours соседей -
+ * фильмов, которые лайкнули те же пользователи, - с числом таких пользователей (весом).
+ * Соседи хранятся в паре массивов int по убыванию веса, поэтому выдача похожих - O(count).
+ * Строится по таблице likes при старте и дальше обновляется на каждом лайке: новый лайк пользователя
+ * увеличивает вес пар с остальными его фильмами, снятие лайка уменьшает.
+ * Список соседей всегда упорядочен, как при построении: по убыванию веса, при равном весе - по возрастанию id,
+ * и хранит не больше max-neighbours первых пар. Новая пара входит с весом 1; в заполненный список она
+ * попадает, только если стоит в этом порядке раньше последней пары (у той вес 1 и id больше), и вытесняет её,
+ * иначе отбрасывается. Поэтому состав списка не зависит от порядка, в котором пришли пары с равным весом.
+ * Веса пар, не попавших в список или вытесненных, точно восстанавливает только построение при следующем старте.
+ * Чтения идут под общей блокировкой чтения и не ждут друг друга, изменения - под блокировкой записи.
+ * Изменения применяются после фиксации транзакции; пришедшие во время построения откладываются
+ * и применяются после него. Повтор уже учтённого лайка ничего не меняет: индекс хранит и сами лайки.
+ * До окончания построения список похожих пуст.
+ * Лайки пользователей и версии их изменений отдаются и наружу - по ним считает рекомендации
+ * RecommendationService.
+ */
+@Component
+@Slf4j
+public class CoOccurrenceIndex {
+    private final FilmStorage filmStorage;
+    private final int maxNeighbours;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Пользователь -> фильмы, которые он лайкнул
+    private IntAdjacency userFilms = new IntAdjacency();
+    private Map<Integer, Neighbours> neighbours = new HashMap<>();
+    // Изменения, пришедшие до окончания построения; null после него
+    private List<Runnable> pending = new ArrayList<>();
+    // Версия растёт при каждом изменении лайков. Для пользователя хранится версия последнего изменения
+    // его лайков; floorVersion - последнего изменения лайков сразу многих (построение, удаление фильма)
+    private long version;
+    private long floorVersion;
+    private final Map<Integer, Long> likesChangedAt = new HashMap<>();
+
+    public CoOccurrenceIndex(FilmStorage filmStorage,
+                             @Value("${filmorate.similar.max-neighbours:50}") int maxNeighbours) {
+        this.filmStorage = filmStorage;
+        this.maxNeighbours = maxNeighbours;
+    }
+
+    // Точное построение по всем лайкам: для каждого фильма считаются веса всех пар и остаются max-neighbours лучших
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.nanoTime();
+        IntAdjacency builtUserFilms = new IntAdjacency();
+        IntAdjacency filmUsers = new IntAdjacency();
+        int[] maxFilmId = new int[1];
+        filmStorage.forEachLike(like -> {
+            builtUserFilms.add(like.getUserId(), like.getFilmId());
+            filmUsers.add(like.getFilmId(), like.getUserId());
+            maxFilmId[0] = Math.max(maxFilmId[0], like.getFilmId());
+        });
+
+        Map<Integer, Neighbours> built = new HashMap<>();
+        int[] weights = new int[maxFilmId[0] + 1];
+        int[] touched = new int[weights.length];
+        long[] ranked = new long[weights.length];
+        for (int filmId = 0; filmId <= maxFilmId[0]; filmId++) {
+            int touchedCount = 0;
+            for (int userId : filmUsers.get(filmId)) {
+                for (int otherId : builtUserFilms.get(userId)) {
+                    if (otherId != filmId && weights[otherId]++ == 0) {
+                        touched[touchedCount++] = otherId;
+                    }
+                }
+            }
+            if (touchedCount == 0) {
+                continue;
+            }
+
+            // Старшие биты - вес "наоборот", младшие - id: сортировка long даёт порядок списка соседей
+            for (int i = 0; i < touchedCount; i++) {
+                int otherId = touched[i];
+                ranked[i] = ((long) (Integer.MAX_VALUE - weights[otherId]) << 32) | otherId;
+                weights[otherId] = 0;
+            }
+            Arrays.sort(ranked, 0, touchedCount);
+            built.put(filmId, Neighbours.of(ranked, Math.min(touchedCount, maxNeighbours)));
+        }
+
+        lock.writeLock().lock();
+        try {
+            userFilms = builtUserFilms;
+            neighbours = built;
+            floorVersion = ++version;
+            pending.forEach(Runnable::run);
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс похожих фильмов построен: фильмов {}, лайков {}, за {} мс", built.size(),
+                builtUserFilms.edgesCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Id похожих фильмов по убыванию веса, не больше count и не больше max-neighbours
+    public int[] similar(int filmId, int count) {
+        lock.readLock().lock();
+        try {
+            Neighbours list = neighbours.get(filmId);
+            return list == null ? new int[0] : list.top(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Версия последнего изменения лайков кого-то из пользователей
+    public long likesVersion(int[] userIds) {
+        lock.readLock().lock();
+        try {
+            long result = floorVersion;
+            for (int userId : userIds) {
+                result = Math.max(result, likesChangedAt.getOrDefault(userId, 0L));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Id фильмов, которые лайкнул пользователь, по возрастанию
+    public int[] likedFilms(int userId) {
+        lock.readLock().lock();
+        try {
+            return userFilms.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void liked(Collection<Like> likes) {
+        afterCommit(() -> likes.forEach(like -> addLike(like.getFilmId(), like.getUserId())));
+    }
+
+    public void unliked(Collection<Like> likes) {
+        afterCommit(() -> likes.forEach(like -> removeLike(like.getFilmId(), like.getUserId())));
+    }
+
+    public void filmDeleted(int filmId) {
+        afterCommit(() -> {
+            neighbours.remove(filmId);
+            neighbours.values().removeIf(list -> list.remove(filmId) && list.size == 0);
+            userFilms.removeTarget(filmId);
+            floorVersion = ++version;
+        });
+    }
+
+    // Лайки пользователя удаляются вместе с ним
+    public void userDeleted(int userId) {
+        afterCommit(() -> {
+            int[] films = userFilms.get(userId);
+            for (int i = 0; i < films.length; i++) {
+                for (int j = i + 1; j < films.length; j++) {
+                    decrement(films[i], films[j]);
+                    decrement(films[j], films[i]);
+                }
+            }
+            userFilms.removeNode(userId);
+            likesChangedAt.remove(userId);
+        });
+    }
+
+    private void addLike(int filmId, int userId) {
+        if (!userFilms.add(userId, filmId)) {
+            return;
+        }
+        likesChangedAt.put(userId, ++version);
+        for (int otherId : userFilms.get(userId)) {
+            if (otherId != filmId) {
+                increment(filmId, otherId);
+                increment(otherId, filmId);
+            }
+        }
+    }
+
+    private void removeLike(int filmId, int userId) {
+        if (!userFilms.remove(userId, filmId)) {
+            return;
+        }
+        likesChangedAt.put(userId, ++version);
+        for (int otherId : userFilms.get(userId)) {
+            decrement(filmId, otherId);
+            decrement(otherId, filmId);
+        }
+    }
+
+    private void increment(int filmId, int otherId) {
+        neighbours.computeIfAbsent(filmId, id -> new Neighbours()).increment(otherId, maxNeighbours);
+    }
+
+    private void decrement(int filmId, int otherId) {
+        Neighbours list = neighbours.get(filmId);
+        if (list != null && list.decrement(otherId) && list.size == 0) {
+            neighbours.remove(filmId);
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        AfterCommit.run(() -> apply(change));
+    }
+
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            } else {
+                change.run();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Соседи фильма по убыванию веса, при равном весе - по возрастанию id
+    private static final class Neighbours {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private int[] ids;
+        private int[] weights;
+        private int size;
+
+        Neighbours() {
+            ids = new int[INITIAL_CAPACITY];
+            weights = new int[INITIAL_CAPACITY];
+        }
+
+        private Neighbours(int[] ids, int[] weights) {
+            this.ids = ids;
+            this.weights = weights;
+            this.size = ids.length;
+        }
+
+        // ranked - ключи из build(), отсортированные по возрастанию
+        static Neighbours of(long[] ranked, int count) {
+            int[] ids = new int[count];
+            int[] weights = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = (int) ranked[i];
+                weights[i] = Integer.MAX_VALUE - (int) (ranked[i] >>> 32);
+            }
+            return new Neighbours(ids, weights);
+        }
+
+        void increment(int id, int maxSize) {
+            int i = indexOf(id);
+            if (i < 0) {
+                if (size == maxSize) {
+                    // Новая пара с весом 1 вытесняет последнюю, только если стоит раньше неё
+                    if (size == 0 || weights[size - 1] > 1 || ids[size - 1] < id) {
+                        return;
+                    }
+                    size--;
+                }
+                if (size == ids.length) {
+                    int capacity = Math.min(maxSize, ids.length * 2);
+                    ids = Arrays.copyOf(ids, capacity);
+                    weights = Arrays.copyOf(weights, capacity);
+                }
+                i = size++;
+                ids[i] = id;
+                weights[i] = 0;
+            }
+            weights[i]++;
+            while (i > 0 && before(i, i - 1)) {
+                swap(i, i - 1);
+                i--;
+            }
+        }
+
+        // true, если сосед был в списке
+        boolean decrement(int id) {
+            int i = indexOf(id);
+            if (i < 0) {
+                return false;
+            }
+            if (--weights[i] == 0) {
+                removeAt(i);
+                return true;
+            }
+            while (i + 1 < size && before(i + 1, i)) {
+                swap(i, i + 1);
+                i++;
+            }
+            return true;
+        }
+
+        boolean remove(int id) {
+            int i = indexOf(id);
+            if (i < 0) {
+                return false;
+            }
+            removeAt(i);
+            return true;
+        }
+
+        int[] top(int count) {
+            return Arrays.copyOf(ids, Math.min(count, size));
+        }
+
+        private int indexOf(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void removeAt(int i) {
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            System.arraycopy(weights, i + 1, weights, i, size - i - 1);
+            size--;
+        }
+
+        private boolean before(int a, int b) {
+            return weights[a] > weights[b] || (weights[a] == weights[b] && ids[a] < ids[b]);
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            int weight = weights[a];
+            weights[a] = weights[b];
+            weights[b] = weight;
+        }
+    }
+}
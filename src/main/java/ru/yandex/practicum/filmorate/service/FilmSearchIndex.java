@@ -0,0 +1,407 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Полнотекстовый индекс по названию и описанию фильмов для /films/search.
+ * Для каждого слова хранится список id фильмов по возрастанию и число вхождений слова в фильм -
+ * два массива int, без объекта на вхождение. Слова - подряд идущие буквы и цифры в нижнем регистре,
+ * ё заменяется на е, у русских слов отрезается одно окончание: "фильмы" и "фильмом" находятся по "фильм".
+ * Оценка - BM25, вхождение в название весит как NAME_WEIGHT вхождений в описание; фильмы с равной
+ * оценкой идут по возрастанию id. Фильм находится, если в нём есть хотя бы одно слово запроса.
+ * Строится по всем фильмам при старте и дальше обновляется при создании, изменении и удалении фильма
+ * после фиксации транзакции; изменения, пришедшие до окончания построения, применяются после него.
+ */
+@Component
+@Slf4j
+public class FilmSearchIndex {
+    static final int NAME_WEIGHT = 3;
+    // Слова запроса сверх этого числа не учитываются
+    static final int MAX_QUERY_TERMS = 16;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Окончания от длинных к коротким: отрезается первое подошедшее
+    private static final String[] ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ией",
+            "ой", "ей", "ий", "ый", "ая", "яя", "ое", "ее", "ые", "ие", "ов", "ев", "ах", "ях", "ам", "ям",
+            "ом", "ем", "ую", "юю", "ию", "ия", "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"
+    };
+    private static final int MIN_STEM_LENGTH = 3;
+
+    private final FilmStorage filmStorage;
+    // Поиск идёт параллельно, изменения - по одному
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    // Изменения, пришедшие до окончания построения; null после него
+    private List<Runnable> pending = new ArrayList<>();
+
+    public FilmSearchIndex(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.nanoTime();
+        Index built = new Index();
+        filmStorage.forEach(film -> built.put(film.getId(), Document.of(film)));
+        built.trim();
+
+        lock.writeLock().lock();
+        try {
+            index = built;
+            pending.forEach(Runnable::run);
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс фильмов построен: фильмов {}, слов {}, за {} мс", built.documents.size(),
+                built.postings.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Id найденных фильмов по убыванию оценки, не больше count
+    public int[] search(String query, int count) {
+        List<String> terms = tokens(query);
+        if (terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+
+        lock.readLock().lock();
+        try {
+            return index.search(terms.stream().distinct().toList(), count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Слова берутся из фильмов сразу: после фиксации транзакции объекты могут уже измениться
+    public void indexed(Collection<Film> films) {
+        List<Document> documents = films.stream()
+                .map(Document::of)
+                .toList();
+        List<Integer> ids = films.stream()
+                .map(Film::getId)
+                .toList();
+        afterCommit(() -> {
+            for (int i = 0; i < ids.size(); i++) {
+                index.put(ids.get(i), documents.get(i));
+            }
+        });
+    }
+
+    public void filmDeleted(int filmId) {
+        afterCommit(() -> index.remove(filmId));
+    }
+
+    // Слова текста в порядке появления, с повторами
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                token.append(c == 'ё' ? 'е' : c);
+            } else if (!token.isEmpty()) {
+                // Одиночные буквы не ищутся, одиночные цифры - да: "Терминатор 2"
+                if (token.length() > 1 || Character.isDigit(token.charAt(0))) {
+                    tokens.add(stem(token.toString()));
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static String stem(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'а' || c > 'я') {
+                return word;
+            }
+        }
+        for (String ending : ENDINGS) {
+            if (word.endsWith(ending) && word.length() - ending.length() >= MIN_STEM_LENGTH) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+
+    private void afterCommit(Runnable change) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                if (pending != null) {
+                    pending.add(change);
+                } else {
+                    change.run();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Слова фильма без повторов и число вхождений каждого с учётом веса названия
+    private record Document(String[] terms, int[] counts, int length) {
+        static Document of(Film film) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            tokens(film.getName()).forEach(term -> counts.merge(term, NAME_WEIGHT, Integer::sum));
+            tokens(film.getDescription()).forEach(term -> counts.merge(term, 1, Integer::sum));
+
+            String[] terms = new String[counts.size()];
+            int[] termCounts = new int[counts.size()];
+            int length = 0;
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                terms[i] = entry.getKey();
+                termCounts[i] = entry.getValue();
+                length += entry.getValue();
+                i++;
+            }
+            return new Document(terms, termCounts, length);
+        }
+    }
+
+    private static final class Index {
+        private final Map<String, Postings> postings = new HashMap<>();
+        // Фильм -> его слова, чтобы при изменении и удалении убрать его из списков
+        private final Map<Integer, String[]> documents = new HashMap<>();
+        // Длина фильма в словах по id; 0 - фильма в индексе нет
+        private int[] lengths = new int[16];
+        private long totalLength;
+
+        void put(int filmId, Document document) {
+            remove(filmId);
+            String[] terms = new String[document.terms().length];
+            for (int i = 0; i < terms.length; i++) {
+                Postings list = postings.computeIfAbsent(document.terms()[i], Postings::new);
+                list.put(filmId, document.counts()[i]);
+                // Слово из словаря, а не из документа: у всех фильмов одна строка на слово
+                terms[i] = list.term;
+            }
+            documents.put(filmId, terms);
+            if (filmId >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(filmId + 1, lengths.length * 2));
+            }
+            lengths[filmId] = document.length();
+            totalLength += document.length();
+        }
+
+        void remove(int filmId) {
+            String[] terms = documents.remove(filmId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list != null && list.remove(filmId) && list.size == 0) {
+                    postings.remove(term);
+                }
+            }
+            totalLength -= lengths[filmId];
+            lengths[filmId] = 0;
+        }
+
+        void trim() {
+            postings.values().forEach(Postings::trim);
+        }
+
+        int[] search(List<String> terms, int count) {
+            List<Postings> lists = new ArrayList<>();
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list != null) {
+                    lists.add(list);
+                }
+            }
+            if (lists.isEmpty() || count <= 0) {
+                return new int[0];
+            }
+
+            int documentCount = documents.size();
+            double averageLength = (double) totalLength / documentCount;
+            double[] idf = new double[lists.size()];
+            long matches = 0;
+            for (int t = 0; t < lists.size(); t++) {
+                int df = lists.get(t).size;
+                idf[t] = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                matches += df;
+            }
+
+            // Списки идут по возрастанию id: на каждом шаге берётся наименьший текущий id и его вхождения
+            TopK top = new TopK((int) Math.min(count, matches));
+            int[] positions = new int[lists.size()];
+            while (true) {
+                int filmId = Integer.MAX_VALUE;
+                for (int t = 0; t < lists.size(); t++) {
+                    Postings list = lists.get(t);
+                    if (positions[t] < list.size && list.ids[positions[t]] < filmId) {
+                        filmId = list.ids[positions[t]];
+                    }
+                }
+                if (filmId == Integer.MAX_VALUE) {
+                    break;
+                }
+
+                double norm = K1 * (1 - B + B * lengths[filmId] / averageLength);
+                double score = 0;
+                for (int t = 0; t < lists.size(); t++) {
+                    Postings list = lists.get(t);
+                    if (positions[t] < list.size && list.ids[positions[t]] == filmId) {
+                        int tf = list.counts[positions[t]++];
+                        score += idf[t] * tf * (K1 + 1) / (tf + norm);
+                    }
+                }
+                top.offer(filmId, score);
+            }
+            return top.result();
+        }
+    }
+
+    // Фильмы со словом по возрастанию id и число вхождений слова в каждый
+    private static final class Postings {
+        private final String term;
+        private int[] ids = new int[2];
+        private int[] counts = new int[2];
+        private int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void put(int id, int count) {
+            // Новые фильмы получают наибольший id - обычно это добавление в конец
+            int i = size == 0 || ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                counts[i] = count;
+                return;
+            }
+            i = -i - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            System.arraycopy(counts, i, counts, i + 1, size - i);
+            ids[i] = id;
+            counts[i] = count;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            System.arraycopy(counts, i + 1, counts, i, size - i - 1);
+            size--;
+            return true;
+        }
+
+        void trim() {
+            ids = Arrays.copyOf(ids, size);
+            counts = Arrays.copyOf(counts, size);
+        }
+    }
+
+    // count лучших фильмов: куча с худшим в корне - меньшая оценка, при равной - больший id
+    private static final class TopK {
+        private final int[] ids;
+        private final double[] scores;
+        private int size;
+
+        TopK(int capacity) {
+            ids = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        void offer(int id, double score) {
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && worse(ids[0], scores[0], id, score)) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        // Лучшие первыми
+        int[] result() {
+            int[] result = new int[size];
+            while (size > 0) {
+                result[size - 1] = ids[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private static boolean worse(int id, double score, int otherId, double otherScore) {
+            return score < otherScore || (score == otherScore && id > otherId);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!worse(ids[i], scores[i], ids[parent], scores[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && worse(ids[left], scores[left], ids[worst], scores[worst])) {
+                    worst = left;
+                }
+                if (right < size && worse(ids[right], scores[right], ids[worst], scores[worst])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -1,145 +1,365 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class FilmService {
     private final FilmStorage filmStorage;
-    private final GenreDbStorage genreDbStorage;
     private final UserService userService;
     private final MpaService mpaService;
     private final GenreService genreService;
+    private final ObjectMapper objectMapper;
+    private final PopularFilmsCache popularFilmsCache;
+    private final Validator validator;
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    // null, если отложенная запись лайков выключена
+    private final LikeWriteBehind likeWriteBehind;
     public static final LocalDate BIRTHDAY_OF_CINEMA = LocalDate.of(1895, 12, 28);
+    public static final int MAX_PAGE_SIZE = 1000;
 
-    public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+    public FilmService(FilmStorage filmStorage,
                        UserService userService,
                        MpaService mpaService,
                        GenreService genreService,
-                       GenreDbStorage genreDbStorage
+                       ObjectMapper objectMapper,
+                       PopularFilmsCache popularFilmsCache,
+                       Validator validator,
+                       CoOccurrenceIndex coOccurrenceIndex,
+                       FilmSearchIndex filmSearchIndex,
+                       ObjectProvider<LikeWriteBehind> likeWriteBehind
                        ) {
         this.filmStorage = filmStorage;
         this.userService = userService;
         this.mpaService = mpaService;
         this.genreService = genreService;
-        this.genreDbStorage = genreDbStorage;
+        this.objectMapper = objectMapper;
+        this.popularFilmsCache = popularFilmsCache;
+        this.validator = validator;
+        this.coOccurrenceIndex = coOccurrenceIndex;
+        this.filmSearchIndex = filmSearchIndex;
+        this.likeWriteBehind = likeWriteBehind.getIfAvailable();
     }
 
-    public List<Film> all() {
-
-        List<Film> result = filmStorage.getAll();
+    public List<Film> all(int afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
 
-        genreDbStorage.joinGenresToFilms(result);
+        return filmStorage.getAll(afterId, limit);
+    }
 
-        return result;
+    // Выгрузка каталога в формате NDJSON: по одному фильму в строке, без накопления списка в памяти
+    public void export(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(Film.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        try {
+            filmStorage.forEach(film -> {
+                try {
+                    writer.writeValue(out, film);
+                    out.write('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        out.flush();
     }
 
     public Film getById(int id) {
-
-        Film result = filmStorage.getById(id)
+        return filmStorage.getById(id)
                 .orElseThrow(() -> new NotFoundException("Не найден фильм с id: " + id));
-
-        genreDbStorage.joinGenresToFilms(List.of(result));
-
-        return result;
     }
 
     public Film create(Film newFilm) {
         log.info("create, input object {}", newFilm);
 
         validate(newFilm);
-
-        if (newFilm.getMpa() != null) {
-            mpaService.checkMpaExists(newFilm.getMpa().getId());
-        }
-
-        if (newFilm.getGenres() != null) {
-            genreService.checkGenresExists(newFilm.getGenres().stream()
-                    .map(Genre::getId)
-                    .distinct()
-                    .toList());
-        }
+        resolveReferences(newFilm);
 
         Film createdFilm = filmStorage.create(newFilm);
+        filmSearchIndex.indexed(List.of(createdFilm));
 
         log.info("create, output object {}", createdFilm);
         return createdFilm;
     }
 
+    @Transactional
     public Film update(Film filmToUpdate) {
         log.info("update, input object {}", filmToUpdate);
 
         validate(filmToUpdate);
 
         checkFilmExists(filmToUpdate.getId());
+        resolveReferences(filmToUpdate);
+
+        Film updatedFilm = filmStorage.update(filmToUpdate);
+        filmSearchIndex.indexed(List.of(updatedFilm));
+
+        log.info("output object: {}", updatedFilm);
+        return updatedFilm;
+    }
 
-        if (filmToUpdate.getMpa() != null) {
-            mpaService.checkMpaExists(filmToUpdate.getMpa().getId());
+    // Фильмы без id создаются, с id - обновляются. Элементы с ошибками отклоняются,
+    // остальные записываются пакетами в одной транзакции. Результаты - в порядке элементов запроса
+    @Transactional
+    public List<BatchItemResult> saveBatch(List<Film> films) {
+        BatchSupport.checkSize(films);
+
+        // Справочники читаются один раз на весь пакет
+        Map<Integer, MpaRating> mpaById = mpaService.getAll().stream()
+                .collect(Collectors.toMap(MpaRating::getId, Function.identity()));
+        Map<Integer, Genre> genresById = genreService.getAll().stream()
+                .collect(Collectors.toMap(Genre::getId, Function.identity()));
+
+        BatchItemResult[] results = new BatchItemResult[films.size()];
+        List<Integer> createIndexes = new ArrayList<>();
+        List<Film> toCreate = new ArrayList<>();
+        List<Integer> updateIndexes = new ArrayList<>();
+        List<Film> toUpdate = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            String error = batchItemError(film, mpaById, genresById);
+            if (error != null) {
+                results[i] = BatchItemResult.rejected(i, film == null ? null : film.getId(), error);
+            } else if (film.getId() == null) {
+                createIndexes.add(i);
+                toCreate.add(film);
+            } else {
+                updateIndexes.add(i);
+                toUpdate.add(film);
+            }
         }
 
-        if (filmToUpdate.getGenres() != null) {
-            genreService.checkGenresExists(filmToUpdate.getGenres().stream()
-                    .map(Genre::getId)
-                    .distinct()
-                    .toList());
+        filmStorage.createAll(toCreate);
+        filmSearchIndex.indexed(toCreate);
+        for (int i = 0; i < toCreate.size(); i++) {
+            results[createIndexes.get(i)] = BatchItemResult.created(createIndexes.get(i), toCreate.get(i).getId());
         }
 
-        Film updatedFilm = filmStorage.update(filmToUpdate);
+        List<Film> updated = filmStorage.updateAll(toUpdate);
+        filmSearchIndex.indexed(updated);
+        Set<Integer> updatedIds = updated.stream()
+                .map(Film::getId)
+                .collect(Collectors.toSet());
+        for (int i = 0; i < toUpdate.size(); i++) {
+            int index = updateIndexes.get(i);
+            int id = toUpdate.get(i).getId();
+            results[index] = updatedIds.contains(id)
+                    ? BatchItemResult.updated(index, id)
+                    : BatchItemResult.rejected(index, id, "Не найден фильм с id:" + id);
+        }
 
-        log.info("output object: {}", updatedFilm);
-        return updatedFilm;
+        log.info("saveBatch: items = {}, created = {}, updated = {}",
+                films.size(), toCreate.size(), updatedIds.size());
+        return List.of(results);
     }
 
+    @Transactional
     public void deleteById(int id) {
         checkFilmExists(id);
         filmStorage.delete(id);
+        coOccurrenceIndex.filmDeleted(id);
+        filmSearchIndex.filmDeleted(id);
     }
 
+    @Transactional
     public void addLike(int id, int userId) {
         userService.checkUserExists(userId);
         checkFilmExists(id);
 
-        filmStorage.addLike(id, userId);
+        if (likeWriteBehind != null) {
+            likeWriteBehind.like(id, userId);
+        } else {
+            filmStorage.addLike(id, userId);
+            coOccurrenceIndex.liked(List.of(new Like(id, userId)));
+        }
 
         log.info("Like added: Id={}, userId={}", id, userId);
     }
 
+    @Transactional
     public void deleteLike(int id, int userId) {
         userService.checkUserExists(userId);
         checkFilmExists(id);
 
-        filmStorage.deleteLike(id, userId);
+        if (likeWriteBehind != null) {
+            likeWriteBehind.unlike(id, userId);
+        } else {
+            filmStorage.deleteLike(id, userId);
+            coOccurrenceIndex.unliked(List.of(new Like(id, userId)));
+        }
 
         log.info("Like deleted: Id={}, userId={}", id, userId);
     }
 
     public List<Film> getPopular(int count) {
-        if (count <= 0) {
-            throw new ValidationException("Параметр count должен быть больше 0");
-        }
+        validateCount(count);
 
         List<Film> popular = filmStorage.getPopular(count);
 
-        genreDbStorage.joinGenresToFilms(popular);
-
         log.debug("getPopular, count = {}, resultSize = {}", count, popular.size());
         return popular;
     }
 
+    // Топ среди фильмов жанра, рейтинга и года выпуска; null - без фильтра по этому полю
+    public List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year) {
+        validateCount(count);
+        if (genreId != null) {
+            genreService.checkGenreExists(genreId);
+        }
+        if (mpaId != null) {
+            mpaService.checkMpaExists(mpaId);
+        }
+
+        List<Film> popular = filmStorage.getPopular(count, genreId, mpaId, year);
+
+        log.debug("getPopular, count = {}, genreId = {}, mpaId = {}, year = {}, resultSize = {}",
+                count, genreId, mpaId, year, popular.size());
+        return popular;
+    }
+
+    // Фильмы, которые чаще всего лайкали те же пользователи, что и фильм id; порядок - по числу таких пользователей
+    public List<Film> getSimilar(int id, int count) {
+        validateCount(count);
+        checkFilmExists(id);
+
+        List<Film> similar = getInOrder(coOccurrenceIndex.similar(id, count));
+
+        log.debug("getSimilar, id = {}, count = {}, resultSize = {}", id, count, similar.size());
+        return similar;
+    }
+
+    // Фильмы, в названии или описании которых есть слова запроса; самые подходящие первыми
+    public List<Film> search(String query, int count) {
+        validateCount(count);
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Параметр q не может быть пустым");
+        }
+
+        List<Film> found = getInOrder(filmSearchIndex.search(query, count));
+
+        log.debug("search, query = {}, count = {}, resultSize = {}", query, count, found.size());
+        return found;
+    }
+
+    // То же, что getPopular, но уже в JSON и, если данные не менялись, без обращения к хранилищу
+    public PopularFilmsCache.Entry getPopularJson(int count) {
+        validateCount(count);
+
+        return popularFilmsCache.get(count);
+    }
+
     public void checkFilmExists(int id) {
-        filmStorage.getById(id)
-                .orElseThrow(() -> new NotFoundException("Не найден фильм с id:" + id));
+        if (!filmStorage.exists(id)) {
+            throw new NotFoundException("Не найден фильм с id:" + id);
+        }
+    }
+
+    // Фильмы с данными id в том же порядке; удалённые после ответа индекса пропускаются
+    private List<Film> getInOrder(int[] ids) {
+        Map<Integer, Film> filmsById = filmStorage.getByIds(Arrays.stream(ids).boxed().toList()).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return Arrays.stream(ids)
+                .mapToObj(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Заменяет рейтинг и жанры из запроса (обычно только id) на записи справочников.
+    // Заодно проверяет, что они существуют.
+    private void resolveReferences(Film film) {
+        if (film.getMpa() != null) {
+            film.setMpa(mpaService.getById(film.getMpa().getId()));
+        }
+
+        if (film.getGenres() != null) {
+            List<Integer> genreIds = film.getGenres().stream()
+                    .map(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .toList();
+            film.setGenres(new LinkedHashSet<>(genreService.getByIds(genreIds)));
+        }
+    }
+
+    // Проверяет элемент пакета и подставляет записи справочников; возвращает текст ошибки или null
+    private String batchItemError(Film film, Map<Integer, MpaRating> mpaById, Map<Integer, Genre> genresById) {
+        String violations = BatchSupport.violations(validator, film);
+        if (violations != null) {
+            return violations;
+        }
+        try {
+            validate(film);
+        } catch (ValidationException ex) {
+            return ex.getMessage();
+        }
+
+        if (film.getMpa() != null) {
+            MpaRating mpa = mpaById.get(film.getMpa().getId());
+            if (mpa == null) {
+                return "Не найден mpa с id=" + film.getMpa().getId();
+            }
+            film.setMpa(mpa);
+        }
+
+        if (film.getGenres() != null) {
+            List<Integer> genreIds = film.getGenres().stream()
+                    .map(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .toList();
+            List<String> notFoundIds = genreIds.stream()
+                    .filter(id -> !genresById.containsKey(id))
+                    .map(String::valueOf)
+                    .toList();
+            if (!notFoundIds.isEmpty()) {
+                return String.format("Не найдены жанры с идентификаторами: %s", notFoundIds);
+            }
+            film.setGenres(genreIds.stream()
+                    .map(genresById::get)
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
+        }
+        return null;
+    }
+
+    private void validateCount(int count) {
+        if (count <= 0) {
+            throw new ValidationException("Параметр count должен быть больше 0");
+        }
     }
 
     private void validate(Film film) {
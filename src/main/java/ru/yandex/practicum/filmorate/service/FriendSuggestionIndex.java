@@ -0,0 +1,352 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.storage.IntAdjacency;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Граф дружбы для /users/{id}/friends/suggestions: друзья друзей по убыванию числа общих друзей.
+ * Основа - неизменяемый снимок таблицы friends в формате CSR (строки всех пользователей подряд
+ * в одном массиве int), поверх него - журнал изменений после снимка: добавленная и удалённая дружба
+ * и удалённые пользователи. Обход двух шагов не обращается к БД и не создаёт объектов на каждое ребро.
+ * Снимок строится при старте и перестраивается в фоне, когда в журнале набирается max-delta изменений.
+ * Изменения, пришедшие во время перестройки, повторяются поверх нового снимка - повтор добавления
+ * или удаления дружбы ничего не меняет. Изменения применяются после фиксации транзакции.
+ * У пользователя с очень большим числом друзей обход останавливается после max-visited рёбер:
+ * ответ считается по части друзей.
+ */
+@Component
+@Slf4j
+public class FriendSuggestionIndex {
+    private final UserStorage userStorage;
+    private final Executor rebuilder;
+    private final int maxDelta;
+    private final int maxVisited;
+
+    // Изменение журнала и подмена снимка
+    private final ReentrantLock lock = new ReentrantLock();
+    // Перестройки идут по одной; построение ждёт БД, поэтому ReentrantLock, а не synchronized
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final AtomicBoolean rebuildSubmitted = new AtomicBoolean();
+    private volatile Snapshot snapshot = new Snapshot(Csr.EMPTY);
+    // Изменения с начала идущей перестройки; null, если перестройка не идёт
+    private List<Change> rebuildLog = new ArrayList<>();
+
+    public FriendSuggestionIndex(UserStorage userStorage,
+                                 @Qualifier("applicationTaskExecutor") Executor rebuilder,
+                                 @Value("${filmorate.friend-suggestions.max-delta:10000}") int maxDelta,
+                                 @Value("${filmorate.friend-suggestions.max-visited:1000000}") int maxVisited) {
+        this.userStorage = userStorage;
+        this.rebuilder = rebuilder;
+        this.maxDelta = maxDelta;
+        this.maxVisited = maxVisited;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            lock.lock();
+            try {
+                if (rebuildLog == null) {
+                    rebuildLog = new ArrayList<>();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            Snapshot built;
+            try {
+                Csr.Builder builder = new Csr.Builder();
+                userStorage.forEachFriendship(friendship ->
+                        builder.add(friendship.getUserId(), friendship.getFriendId()));
+                built = new Snapshot(builder.build());
+            } catch (RuntimeException ex) {
+                // Изменения уже в дельте текущего снимка; без сброса журнал рос бы, а перестройка больше не запускалась
+                lock.lock();
+                try {
+                    rebuildLog = null;
+                } finally {
+                    lock.unlock();
+                }
+                throw ex;
+            }
+
+            int replayed;
+            lock.lock();
+            try {
+                replayed = rebuildLog.size();
+                rebuildLog.forEach(built::apply);
+                rebuildLog = null;
+                snapshot = built;
+            } finally {
+                lock.unlock();
+            }
+            log.info("Снимок графа дружбы построен: связей {}, изменений за время построения {}, за {} мс",
+                    built.csr.targets.length, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    // Id друзей друзей по убыванию числа общих друзей, при равенстве - по возрастанию id; не больше count
+    public int[] suggest(int userId, int count) {
+        Snapshot current = snapshot;
+        int[] friends = current.friendsOf(userId);
+
+        int[] candidates = new int[16];
+        int candidateCount = 0;
+        long visited = 0;
+        for (int friendId : friends) {
+            int[] friendsOfFriend = current.friendsOf(friendId);
+            visited += friendsOfFriend.length;
+            for (int candidateId : friendsOfFriend) {
+                if (candidateId == userId || Arrays.binarySearch(friends, candidateId) >= 0) {
+                    continue;
+                }
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                }
+                candidates[candidateCount++] = candidateId;
+            }
+            if (visited >= maxVisited) {
+                break;
+            }
+        }
+
+        // После сортировки один кандидат встречается подряд столько раз, сколько у него общих друзей.
+        // Старшие биты ключа - число общих друзей "наоборот", младшие - id
+        Arrays.sort(candidates, 0, candidateCount);
+        long[] ranked = new long[candidateCount];
+        int rankedCount = 0;
+        for (int i = 0; i < candidateCount; ) {
+            int candidateId = candidates[i];
+            int mutual = 0;
+            while (i < candidateCount && candidates[i] == candidateId) {
+                mutual++;
+                i++;
+            }
+            ranked[rankedCount++] = ((long) (Integer.MAX_VALUE - mutual) << 32) | candidateId;
+        }
+        Arrays.sort(ranked, 0, rankedCount);
+
+        int[] result = new int[Math.min(count, rankedCount)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) ranked[i];
+        }
+        return result;
+    }
+
+    public void friendAdded(int userId, int friendId) {
+        AfterCommit.run(() -> apply(List.of(new Change(Change.Type.ADD, userId, friendId))));
+    }
+
+    public void friendsAdded(Collection<Friendship> friendships) {
+        List<Change> changes = friendships.stream()
+                .map(friendship -> new Change(Change.Type.ADD, friendship.getUserId(), friendship.getFriendId()))
+                .toList();
+        AfterCommit.run(() -> apply(changes));
+    }
+
+    public void friendDeleted(int userId, int friendId) {
+        AfterCommit.run(() -> apply(List.of(new Change(Change.Type.DELETE, userId, friendId))));
+    }
+
+    public void userDeleted(int userId) {
+        AfterCommit.run(() -> apply(List.of(new Change(Change.Type.DELETE_USER, userId, 0))));
+    }
+
+    private void apply(List<Change> changes) {
+        boolean rebuildNeeded;
+        lock.lock();
+        try {
+            Snapshot current = snapshot;
+            changes.forEach(current::apply);
+            if (rebuildLog != null) {
+                rebuildLog.addAll(changes);
+            }
+            rebuildNeeded = rebuildLog == null && current.deltaSize >= maxDelta;
+        } finally {
+            lock.unlock();
+        }
+
+        if (rebuildNeeded && rebuildSubmitted.compareAndSet(false, true)) {
+            try {
+                rebuilder.execute(() -> {
+                    try {
+                        rebuild();
+                    } catch (RuntimeException ex) {
+                        log.warn("Не удалось перестроить снимок графа дружбы", ex);
+                    } finally {
+                        rebuildSubmitted.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                rebuildSubmitted.set(false);
+            }
+        }
+    }
+
+    private record Change(Type type, int userId, int friendId) {
+        enum Type {
+            ADD,
+            DELETE,
+            DELETE_USER
+        }
+    }
+
+    // Снимок и изменения после него. Журнал меняется только под lock, читается без блокировки
+    private static final class Snapshot {
+        private static final int[] EMPTY = new int[0];
+
+        private final Csr csr;
+        private final IntAdjacency added = new IntAdjacency();
+        private final IntAdjacency removed = new IntAdjacency();
+        private final Set<Integer> deletedUsers = ConcurrentHashMap.newKeySet();
+        private int deltaSize;
+
+        Snapshot(Csr csr) {
+            this.csr = csr;
+        }
+
+        void apply(Change change) {
+            int userId = change.userId();
+            int friendId = change.friendId();
+            switch (change.type()) {
+                case ADD -> {
+                    removed.remove(userId, friendId);
+                    if (!csr.contains(userId, friendId)) {
+                        added.add(userId, friendId);
+                    }
+                }
+                case DELETE -> {
+                    added.remove(userId, friendId);
+                    if (csr.contains(userId, friendId)) {
+                        removed.add(userId, friendId);
+                    }
+                }
+                case DELETE_USER -> {
+                    // Связи с удалённым пользователем в чужих строках отбрасываются при чтении
+                    deletedUsers.add(userId);
+                    added.removeNode(userId);
+                    removed.removeNode(userId);
+                }
+            }
+            deltaSize++;
+        }
+
+        // Друзья пользователя по возрастанию id с учётом изменений после снимка
+        int[] friendsOf(int userId) {
+            if (!deletedUsers.isEmpty() && deletedUsers.contains(userId)) {
+                return EMPTY;
+            }
+            int row = csr.row(userId);
+            int from = row < 0 ? 0 : csr.offsets[row];
+            int to = row < 0 ? 0 : csr.offsets[row + 1];
+            int[] plus = added.get(userId);
+            int[] minus = removed.get(userId);
+            if (plus.length == 0 && minus.length == 0 && deletedUsers.isEmpty()) {
+                return Arrays.copyOfRange(csr.targets, from, to);
+            }
+
+            // Строка снимка и добавленные связи не пересекаются: сливаем два отсортированных списка
+            int[] result = new int[to - from + plus.length];
+            int size = 0;
+            int i = from;
+            int j = 0;
+            while (i < to || j < plus.length) {
+                int next;
+                if (j == plus.length || (i < to && csr.targets[i] < plus[j])) {
+                    next = csr.targets[i++];
+                    if (Arrays.binarySearch(minus, next) >= 0) {
+                        continue;
+                    }
+                } else {
+                    next = plus[j++];
+                }
+                if (!deletedUsers.contains(next)) {
+                    result[size++] = next;
+                }
+            }
+            return size == result.length ? result : Arrays.copyOf(result, size);
+        }
+    }
+
+    // Дружба в формате CSR: друзья users[i] - targets[offsets[i]..offsets[i + 1]) по возрастанию id
+    private static final class Csr {
+        static final Csr EMPTY = new Csr(new int[0], new int[]{0}, new int[0]);
+
+        private final int[] users;
+        private final int[] offsets;
+        private final int[] targets;
+
+        private Csr(int[] users, int[] offsets, int[] targets) {
+            this.users = users;
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        // Номер строки пользователя или отрицательное число, если друзей в снимке у него нет
+        int row(int userId) {
+            return Arrays.binarySearch(users, userId);
+        }
+
+        boolean contains(int userId, int friendId) {
+            int row = row(userId);
+            return row >= 0 && Arrays.binarySearch(targets, offsets[row], offsets[row + 1], friendId) >= 0;
+        }
+
+        // Принимает связи в порядке userId, затем friendId - как их отдаёт UserStorage.forEachFriendship
+        static final class Builder {
+            private int[] users = new int[16];
+            private int[] offsets = new int[17];
+            private int[] targets = new int[16];
+            private int userCount;
+            private int edgeCount;
+
+            void add(int userId, int friendId) {
+                if (userCount == 0 || users[userCount - 1] != userId) {
+                    if (userCount > 0 && users[userCount - 1] > userId) {
+                        throw new IllegalStateException("Связи дружбы должны идти по возрастанию userId");
+                    }
+                    if (userCount == users.length) {
+                        users = Arrays.copyOf(users, userCount * 2);
+                        offsets = Arrays.copyOf(offsets, userCount * 2 + 1);
+                    }
+                    users[userCount] = userId;
+                    offsets[userCount] = edgeCount;
+                    userCount++;
+                }
+                if (edgeCount == targets.length) {
+                    targets = Arrays.copyOf(targets, edgeCount * 2);
+                }
+                targets[edgeCount++] = friendId;
+            }
+
+            Csr build() {
+                offsets[userCount] = edgeCount;
+                return new Csr(Arrays.copyOf(users, userCount), Arrays.copyOf(offsets, userCount + 1),
+                        Arrays.copyOf(targets, edgeCount));
+            }
+        }
+    }
+}
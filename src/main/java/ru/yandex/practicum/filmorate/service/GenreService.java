@@ -30,6 +30,11 @@ public class GenreService {
                 .orElseThrow(() -> new NotFoundException("Не найден жанр с id: " + id));
     }
 
+    public List<Genre> getByIds(List<Integer> ids) {
+        checkGenresExists(ids);
+        return genreDbStorage.getGenresByIds(ids);
+    }
+
     public void checkGenresExists(List<Integer> ids) {
 
         // Получаю список жанров по идентификаторам ids, извлекаю из них идентификаторы
@@ -0,0 +1,199 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый импорт лайков и дружбы: строки CSV ({@code filmId,userId}) или NDJSON
+ * ({@code {"filmId":1,"userId":2}}) читаются по одной и пишутся пакетами по BATCH_SIZE
+ * через FilmStorage.addLikes и UserStorage.addFriends (MERGE - повторы не дублируются).
+ * Id проверяются по отсортированным массивам id фильмов и пользователей, прочитанным один раз
+ * в начале импорта, а не запросом на каждую строку. Каждый пакет - отдельная транзакция:
+ * при обрыве потока загруженное остаётся, а повторный импорт того же файла безопасен.
+ */
+@Service
+@Slf4j
+public class GraphImportService {
+    public static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+    static final int BATCH_SIZE = 1000;
+    static final int MAX_REPORTED_ROWS = 1000;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final FriendSuggestionIndex friendSuggestionIndex;
+
+    public GraphImportService(FilmStorage filmStorage, UserStorage userStorage, ObjectMapper objectMapper,
+                              CoOccurrenceIndex coOccurrenceIndex, FriendSuggestionIndex friendSuggestionIndex) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.objectMapper = objectMapper;
+        this.coOccurrenceIndex = coOccurrenceIndex;
+        this.friendSuggestionIndex = friendSuggestionIndex;
+    }
+
+    public ImportReport importLikes(InputStream in, MediaType contentType) throws IOException {
+        int[] filmIds = filmStorage.getAllIds();
+        int[] userIds = userStorage.getAllIds();
+
+        ImportReport report = importPairs(in, contentType, "filmId", "userId", (filmId, userId) -> {
+            if (!contains(filmIds, filmId)) {
+                return "Не найден фильм с id: " + filmId;
+            }
+            if (!contains(userIds, userId)) {
+                return "Не найден пользователь с id: " + userId;
+            }
+            return null;
+        }, Like::new, batch -> coOccurrenceIndex.liked(filmStorage.addLikes(batch)));
+
+        log.info("importLikes: {}", report);
+        return report;
+    }
+
+    public ImportReport importFriends(InputStream in, MediaType contentType) throws IOException {
+        int[] userIds = userStorage.getAllIds();
+
+        ImportReport report = importPairs(in, contentType, "userId", "friendId", (userId, friendId) -> {
+            if (userId == friendId) {
+                return "Пользователь не может быть другом самого себя.";
+            }
+            if (!contains(userIds, userId)) {
+                return "Не найден пользователь с id: " + userId;
+            }
+            if (!contains(userIds, friendId)) {
+                return "Не найден пользователь с id: " + friendId;
+            }
+            return null;
+        }, Friendship::new, batch -> {
+            userStorage.addFriends(batch);
+            friendSuggestionIndex.friendsAdded(batch);
+        });
+
+        log.info("importFriends: {}", report);
+        return report;
+    }
+
+    private <T> ImportReport importPairs(InputStream in, MediaType contentType, String first, String second,
+                                         PairCheck check, PairFactory<T> factory,
+                                         Consumer<List<T>> writer) throws IOException {
+        boolean csv = isCsv(contentType);
+        ImportReport report = new ImportReport();
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (csv && lineNumber == 1 && isCsvHeader(line, first, second))) {
+                continue;
+            }
+            report.setRows(report.getRows() + 1);
+
+            int[] pair = csv ? parseCsv(line) : parseNdjson(line, first, second);
+            String error = pair == null
+                    ? "Ожидалась строка вида " + (csv ? first + "," + second : "{\"" + first + "\":1,\"" + second + "\":2}")
+                    : check.error(pair[0], pair[1]);
+            if (error != null) {
+                reject(report, lineNumber, line, error);
+                continue;
+            }
+
+            batch.add(factory.create(pair[0], pair[1]));
+            report.setAccepted(report.getAccepted() + 1);
+            if (batch.size() == BATCH_SIZE) {
+                writer.accept(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writer.accept(batch);
+        }
+        return report;
+    }
+
+    private boolean isCsv(MediaType contentType) {
+        if (contentType != null && TEXT_CSV.includes(contentType)) {
+            return true;
+        }
+        if (contentType != null && MediaType.APPLICATION_NDJSON.includes(contentType)) {
+            return false;
+        }
+        throw new ValidationException("Импорт принимает " + TEXT_CSV + " или " + MediaType.APPLICATION_NDJSON);
+    }
+
+    // Необязательная первая строка CSV с именами колонок
+    private boolean isCsvHeader(String line, String first, String second) {
+        return line.replace(" ", "").equalsIgnoreCase(first + "," + second);
+    }
+
+    private int[] parseCsv(String line) {
+        int comma = line.indexOf(',');
+        if (comma < 0) {
+            return null;
+        }
+        try {
+            return new int[]{
+                    Integer.parseInt(line.substring(0, comma).strip()),
+                    Integer.parseInt(line.substring(comma + 1).strip())
+            };
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private int[] parseNdjson(String line, String first, String second) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            JsonNode firstId = node.get(first);
+            JsonNode secondId = node.get(second);
+            if (firstId == null || secondId == null || !firstId.isInt() || !secondId.isInt()) {
+                return null;
+            }
+            return new int[]{firstId.intValue(), secondId.intValue()};
+        } catch (JsonProcessingException ex) {
+            return null;
+        }
+    }
+
+    private void reject(ImportReport report, long lineNumber, String line, String error) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getRejectedRows().size() < MAX_REPORTED_ROWS) {
+            report.getRejectedRows().add(new ImportReport.RejectedRow(lineNumber, line, error));
+        }
+    }
+
+    private static boolean contains(int[] sortedIds, int id) {
+        return Arrays.binarySearch(sortedIds, id) >= 0;
+    }
+
+    // Текст ошибки для пары id или null, если пара допустима
+    private interface PairCheck {
+        String error(int first, int second);
+    }
+
+    private interface PairFactory<T> {
+        T create(int first, int second);
+    }
+}
@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Журнал принятых, но ещё не записанных в БД лайков.
+ * Каждое событие дописывается строкой "+,filmId,userId" (лайк) или "-,filmId,userId" (снятие лайка).
+ * Перед сбросом буфера текущий файл закрывается и начинается новый; закрытый файл удаляется,
+ * когда его события записаны в БД. После перезапуска оставшиеся файлы читаются по порядку номеров.
+ * Строки пишутся без fsync: журнал переживает падение процесса, но не отключение питания.
+ * Файловые операции идут под ReentrantLock, чтобы не занимать поток-носитель виртуального потока.
+ */
+@Slf4j
+class LikeJournal {
+    private static final String FILE_PREFIX = "likes-";
+    private static final String FILE_SUFFIX = ".log";
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long fileNumber;
+    private BufferedWriter writer;
+
+    LikeJournal(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            fileNumber = files().stream()
+                    .mapToLong(LikeJournal::numberOf)
+                    .max()
+                    .orElse(0);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // События из всех файлов журнала по порядку
+    List<LikeWriteBehind.LikeEvent> readAll() {
+        lock.lock();
+        try {
+            List<LikeWriteBehind.LikeEvent> events = new ArrayList<>();
+            for (Path file : files()) {
+                try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                    lines.filter(line -> !line.isBlank())
+                            .map(LikeJournal::parse)
+                            .forEach(events::add);
+                } catch (IOException | RuntimeException ex) {
+                    log.error("Не удалось прочитать журнал лайков {}", file, ex);
+                }
+            }
+            return events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void append(LikeWriteBehind.LikeEvent event) {
+        lock.lock();
+        try {
+            if (writer == null) {
+                fileNumber++;
+                writer = Files.newBufferedWriter(directory.resolve(FILE_PREFIX + fileNumber + FILE_SUFFIX),
+                        StandardCharsets.UTF_8);
+            }
+            writer.write((event.liked() ? '+' : '-') + "," + event.filmId() + "," + event.userId());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Закрывает текущий файл; возвращает номер последнего закрытого файла
+    long rotate() {
+        lock.lock();
+        try {
+            close();
+            return fileNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Удаляет файлы с номерами до upToNumber включительно - их события уже в БД
+    void discard(long upToNumber) {
+        lock.lock();
+        try {
+            for (Path file : files()) {
+                if (numberOf(file) <= upToNumber) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ex) {
+                        log.warn("Не удалось удалить файл журнала лайков {}", file, ex);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                log.warn("Не удалось закрыть журнал лайков", ex);
+            }
+            writer = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> files() {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> path.getFileName().toString().startsWith(FILE_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted(Comparator.comparingLong(LikeJournal::numberOf))
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long numberOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    private static LikeWriteBehind.LikeEvent parse(String line) {
+        String[] parts = line.split(",");
+        return new LikeWriteBehind.LikeEvent(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                "+".equals(parts[0]));
+    }
+}
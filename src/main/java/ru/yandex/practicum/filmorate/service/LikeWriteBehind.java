@@ -0,0 +1,226 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Отложенная запись лайков (filmorate.likes.write-behind.enabled=true).
+ * Запросы кладут событие в очередь и сразу возвращаются; очередь сбрасывается в БД пакетом
+ * раз в flush-interval-ms или когда в ней набралось batch-size событий.
+ * Перед сбросом события по одной паре фильм-пользователь схлопываются до последнего.
+ * Если очередь заполнена (capacity), запрос сам сбрасывает её - приём замедляется вместе с БД.
+ * Если задан journal-dir, события сначала пишутся в журнал и после перезапуска дописываются в БД.
+ * Пока события в очереди, популярные фильмы их ещё не учитывают.
+ * Внеочередной сброс выполняется в applicationTaskExecutor Spring Boot - при
+ * spring.threads.virtual.enabled=true это виртуальные потоки, как и у @Scheduled.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class LikeWriteBehind {
+    private final FilmStorage filmStorage;
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final int capacity;
+    private final int batchSize;
+    private final LikeJournal journal;
+
+    private final Queue<LikeEvent> queue = new ConcurrentLinkedQueue<>();
+    // Принятые и ещё не записанные события, включая неудачно записанные
+    private final AtomicInteger size = new AtomicInteger();
+    // Приём события (запись в журнал и очередь) не должен пересекаться со сменой файла журнала при сбросе
+    private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Executor flusher;
+    private final AtomicBoolean flushSubmitted = new AtomicBoolean();
+    // События, которые не удалось записать, - они идут первыми при следующем сбросе
+    private List<LikeEvent> failed = List.of();
+
+    public LikeWriteBehind(FilmStorage filmStorage,
+                           CoOccurrenceIndex coOccurrenceIndex,
+                           @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.journal-dir:}") String journalDir,
+                           @Qualifier("applicationTaskExecutor") Executor flusher) {
+        this.filmStorage = filmStorage;
+        this.coOccurrenceIndex = coOccurrenceIndex;
+        this.flusher = flusher;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.journal = journalDir.isBlank() ? null : new LikeJournal(Path.of(journalDir));
+    }
+
+    // Дописывает в БД события, принятые до перезапуска. Выполняется до приёма новых запросов,
+    // иначе старое событие из журнала могло бы перезаписать более новое
+    @PostConstruct
+    public void replayJournal() {
+        if (journal == null) {
+            return;
+        }
+        List<LikeEvent> events = journal.readAll();
+        if (events.isEmpty()) {
+            return;
+        }
+        log.info("В журнале найдено незаписанных событий лайков: {}", events.size());
+
+        // Сброс запишет их первыми и удалит старые файлы журнала; при ошибке они останутся до следующего
+        failed = events;
+        size.addAndGet(events.size());
+        scheduledFlush();
+    }
+
+    public void like(int filmId, int userId) {
+        accept(new LikeEvent(filmId, userId, true));
+    }
+
+    public void unlike(int filmId, int userId) {
+        accept(new LikeEvent(filmId, userId, false));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.error("Не удалось записать лайки, повтор при следующем сбросе", ex);
+        }
+    }
+
+    // Записывает в БД всё, что накоплено к этому моменту
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<LikeEvent> events = new ArrayList<>(failed);
+            long lastFile = 0;
+            acceptLock.writeLock().lock();
+            try {
+                LikeEvent event;
+                while ((event = queue.poll()) != null) {
+                    events.add(event);
+                }
+                if (journal != null) {
+                    lastFile = journal.rotate();
+                }
+            } finally {
+                acceptLock.writeLock().unlock();
+            }
+            if (events.isEmpty()) {
+                return;
+            }
+
+            failed = events;
+            write(events);
+            failed = List.of();
+            size.addAndGet(-events.size());
+            if (journal != null) {
+                journal.discard(lastFile);
+            }
+            log.debug("Записано событий лайков: {}", events.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.error("Не удалось записать лайки при остановке, они останутся в журнале", ex);
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    int pending() {
+        return size.get();
+    }
+
+    private void accept(LikeEvent event) {
+        while (!tryReserve()) {
+            // Очередь заполнена - запрос сам сбрасывает её в БД
+            flush();
+        }
+
+        acceptLock.readLock().lock();
+        try {
+            if (journal != null) {
+                journal.append(event);
+            }
+            queue.offer(event);
+        } catch (RuntimeException ex) {
+            size.decrementAndGet();
+            throw ex;
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+
+        if (size.get() >= batchSize && flushSubmitted.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushSubmitted.set(false);
+                    scheduledFlush();
+                });
+            } catch (RejectedExecutionException ignore) {
+                // Приложение останавливается - очередь сбросит shutdown()
+            }
+        }
+    }
+
+    private boolean tryReserve() {
+        while (true) {
+            int current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void write(List<LikeEvent> events) {
+        // Для каждой пары фильм-пользователь важно только последнее событие
+        Map<Like, Boolean> lastState = new LinkedHashMap<>();
+        for (LikeEvent event : events) {
+            lastState.put(new Like(event.filmId(), event.userId()), event.liked());
+        }
+
+        List<Like> added = new ArrayList<>();
+        List<Like> removed = new ArrayList<>();
+        lastState.forEach((like, liked) -> (liked ? added : removed).add(like));
+
+        if (!removed.isEmpty()) {
+            coOccurrenceIndex.unliked(filmStorage.deleteLikes(removed));
+        }
+        if (!added.isEmpty()) {
+            coOccurrenceIndex.liked(filmStorage.addLikes(added));
+        }
+    }
+
+    record LikeEvent(int filmId, int userId, boolean liked) {
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Готовый JSON ответа /films/popular для каждого значения count.
+ * Запись актуальна, пока не изменилась версия фильмов в DataVersions.
+ * Устаревшая запись ещё отдаётся, если собрана не больше max-staleness-ms назад, и одновременно
+ * пересобирается в фоне; более старая пересобирается в потоке запроса. При max-staleness-ms=0
+ * ответ всегда актуален. Хранится не больше max-entries разных count, остальные собираются каждый раз.
+ */
+@Component
+@Slf4j
+public class PopularFilmsCache {
+    private final FilmStorage filmStorage;
+    private final DataVersions dataVersions;
+    private final ObjectWriter writer;
+    private final Executor refresher;
+    private final long maxStalenessNanos;
+    private final int maxEntries;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    // count, для которых уже идёт фоновая пересборка
+    private final Set<Integer> refreshing = ConcurrentHashMap.newKeySet();
+
+    public PopularFilmsCache(FilmStorage filmStorage,
+                             DataVersions dataVersions,
+                             ObjectMapper objectMapper,
+                             @Qualifier("applicationTaskExecutor") Executor refresher,
+                             @Value("${filmorate.popular-cache.max-staleness-ms:500}") long maxStalenessMs,
+                             @Value("${filmorate.popular-cache.max-entries:32}") int maxEntries) {
+        this.filmStorage = filmStorage;
+        this.dataVersions = dataVersions;
+        // Тот же ObjectMapper, что у Spring MVC, - байты совпадают с обычной сериализацией ответа
+        this.writer = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, Film.class));
+        this.refresher = refresher;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        this.maxEntries = maxEntries;
+    }
+
+    public Entry get(int count) {
+        Entry entry = entries.get(count);
+        if (entry != null) {
+            if (entry.version() == dataVersions.version(DataVersions.Resource.FILMS)) {
+                return entry;
+            }
+            if (System.nanoTime() - entry.builtAt() <= maxStalenessNanos) {
+                refreshAsync(count);
+                return entry;
+            }
+        }
+        return load(count);
+    }
+
+    private Entry load(int count) {
+        // Версия читается до запроса: запись во время сборки оставит запись устаревшей, а не потерянной
+        long version = dataVersions.version(DataVersions.Resource.FILMS);
+        Entry entry;
+        try {
+            entry = new Entry(writer.writeValueAsBytes(filmStorage.getPopular(count)), version, System.nanoTime());
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (entries.containsKey(count) || entries.size() < maxEntries) {
+            entries.merge(count, entry, (old, loaded) -> loaded.version() >= old.version() ? loaded : old);
+        }
+        return entry;
+    }
+
+    private void refreshAsync(int count) {
+        if (!refreshing.add(count)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    load(count);
+                } catch (RuntimeException ex) {
+                    log.warn("Не удалось обновить кэш популярных фильмов, count = {}", count, ex);
+                } finally {
+                    refreshing.remove(count);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            refreshing.remove(count);
+        }
+    }
+
+    // json - тело ответа, version - версия фильмов, по которой он собран
+    public record Entry(byte[] json, long version, long builtAt) {
+    }
+}
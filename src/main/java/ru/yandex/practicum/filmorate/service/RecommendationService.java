@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Рекомендации "популярное у друзей" для /users/{id}/recommendations: фильмы, которые лайкнули друзья
+ * пользователя, по убыванию числа таких друзей (при равенстве - по возрастанию id), кроме уже лайкнутых им.
+ * Друзья берутся из UserStorage (в режиме БД - из графа дружбы в памяти), лайки - из CoOccurrenceIndex,
+ * так что БД читается только за самими фильмами.
+ * Отсортированные списки фильмов друзей сливаются через кучу: одинаковые id выходят из неё подряд
+ * и считаются за один проход, без словаря счётчиков.
+ * Первые max-count фильмов кэшируются для каждого пользователя (не больше max-entries пользователей).
+ * Запись действует, пока не изменились список друзей и лайки пользователя и его друзей.
+ */
+@Service
+@Slf4j
+public class RecommendationService {
+    private final UserService userService;
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final CoOccurrenceIndex likes;
+    private final int maxCount;
+    private final int maxEntries;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    public RecommendationService(UserService userService,
+                                 UserStorage userStorage,
+                                 FilmStorage filmStorage,
+                                 CoOccurrenceIndex likes,
+                                 @Value("${filmorate.recommendations.max-count:100}") int maxCount,
+                                 @Value("${filmorate.recommendations.max-entries:10000}") int maxEntries) {
+        this.userService = userService;
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.likes = likes;
+        this.maxCount = maxCount;
+        this.maxEntries = maxEntries;
+    }
+
+    public List<Film> getRecommendations(int userId, int count) {
+        if (count <= 0) {
+            throw new ValidationException("Параметр count должен быть больше 0");
+        }
+        userService.checkUserExists(userId);
+
+        int[] filmIds = recommend(userId, count);
+        Map<Integer, Film> filmsById = filmStorage.getByIds(Arrays.stream(filmIds).boxed().toList()).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        List<Film> recommended = Arrays.stream(filmIds)
+                .mapToObj(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        log.debug("getRecommendations, userId = {}, count = {}, resultSize = {}",
+                userId, count, recommended.size());
+        return recommended;
+    }
+
+    // Id рекомендованных фильмов в порядке выдачи, не больше count
+    int[] recommend(int userId, int count) {
+        int[] friendIds = userStorage.getFriendIds(userId);
+        Entry entry = entries.get(userId);
+        if (entry != null && count <= maxCount && Arrays.equals(entry.friendIds(), friendIds)
+                && likes.likesVersion(withUser(friendIds, userId)) <= entry.version()) {
+            return Arrays.copyOf(entry.filmIds(), Math.min(count, entry.filmIds().length));
+        }
+
+        // Версия читается до лайков: изменение во время расчёта оставит запись устаревшей, а не потерянной
+        long version = likes.version();
+        int[] filmIds = rank(friendIds, likes.likedFilms(userId), Math.max(count, maxCount));
+        if (count <= maxCount) {
+            put(userId, new Entry(friendIds, version, filmIds));
+        }
+        return Arrays.copyOf(filmIds, Math.min(count, filmIds.length));
+    }
+
+    private int[] rank(int[] friendIds, int[] ownFilms, int limit) {
+        int[][] lists = new int[friendIds.length][];
+        for (int i = 0; i < friendIds.length; i++) {
+            lists[i] = likes.likedFilms(friendIds[i]);
+        }
+
+        // Старшие биты - число друзей "наоборот", младшие - id: сортировка long даёт порядок выдачи
+        long[] ranked = new long[16];
+        int rankedCount = 0;
+        ListMerge merge = new ListMerge(lists);
+        while (merge.hasNext()) {
+            int filmId = merge.head();
+            int friends = merge.skip(filmId);
+            if (Arrays.binarySearch(ownFilms, filmId) >= 0) {
+                continue;
+            }
+            if (rankedCount == ranked.length) {
+                ranked = Arrays.copyOf(ranked, rankedCount * 2);
+            }
+            ranked[rankedCount++] = ((long) (Integer.MAX_VALUE - friends) << 32) | filmId;
+        }
+        Arrays.sort(ranked, 0, rankedCount);
+
+        int[] filmIds = new int[Math.min(limit, rankedCount)];
+        for (int i = 0; i < filmIds.length; i++) {
+            filmIds[i] = (int) ranked[i];
+        }
+        return filmIds;
+    }
+
+    private void put(int userId, Entry entry) {
+        if (!entries.containsKey(userId) && entries.size() >= maxEntries) {
+            // Места нет - вытесняется произвольная запись
+            Iterator<Integer> keys = entries.keySet().iterator();
+            if (keys.hasNext()) {
+                entries.remove(keys.next());
+            }
+        }
+        entries.put(userId, entry);
+    }
+
+    private static int[] withUser(int[] friendIds, int userId) {
+        int[] userIds = Arrays.copyOf(friendIds, friendIds.length + 1);
+        userIds[friendIds.length] = userId;
+        return userIds;
+    }
+
+    // friendIds - список друзей, по которому посчитана запись; version - версия лайков до расчёта
+    private record Entry(int[] friendIds, long version, int[] filmIds) {
+    }
+
+    // Слияние отсортированных по возрастанию списков id через двоичную кучу по текущему элементу списка.
+    // Куча хранит номера списков, позиции в списках - отдельный массив
+    private static final class ListMerge {
+        private final int[][] lists;
+        private final int[] positions;
+        private final int[] heap;
+        private int size;
+
+        ListMerge(int[][] lists) {
+            this.lists = lists;
+            this.positions = new int[lists.length];
+            this.heap = new int[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                if (lists[i].length > 0) {
+                    heap[size++] = i;
+                }
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        boolean hasNext() {
+            return size > 0;
+        }
+
+        // Наименьший ещё не пройденный id
+        int head() {
+            return current(heap[0]);
+        }
+
+        // Пропускает все вхождения id и возвращает, в скольких списках он был
+        int skip(int id) {
+            int found = 0;
+            while (size > 0 && current(heap[0]) == id) {
+                found++;
+                int list = heap[0];
+                if (++positions[list] == lists[list].length) {
+                    heap[0] = heap[--size];
+                }
+                siftDown(0);
+            }
+            return found;
+        }
+
+        private int current(int list) {
+            return lists[list][positions[list]];
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && current(heap[left]) < current(heap[smallest])) {
+                    smallest = left;
+                }
+                if (right < size && current(heap[right]) < current(heap[smallest])) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                int swap = heap[i];
+                heap[i] = heap[smallest];
+                heap[smallest] = swap;
+                i = smallest;
+            }
+        }
+    }
+}
@@ -1,27 +1,50 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class UserService {
     private final UserStorage userStorage;
+    private final Validator validator;
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final FriendSuggestionIndex friendSuggestionIndex;
+    public static final int MAX_PAGE_SIZE = 1000;
 
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(UserStorage userStorage,
+                       Validator validator,
+                       CoOccurrenceIndex coOccurrenceIndex,
+                       FriendSuggestionIndex friendSuggestionIndex) {
         this.userStorage = userStorage;
+        this.validator = validator;
+        this.coOccurrenceIndex = coOccurrenceIndex;
+        this.friendSuggestionIndex = friendSuggestionIndex;
     }
 
-    public Collection<User> all() {
-        return userStorage.getAll();
+    public List<User> all(int afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+
+        return userStorage.getAll(afterId, limit);
     }
 
     public User getById(int id) {
@@ -39,6 +62,7 @@ public class UserService {
         return createdUser;
     }
 
+    @Transactional
     public User update(User userToUpdate) {
         log.info("Update, input object: {}", userToUpdate);
 
@@ -55,26 +79,130 @@ public class UserService {
         return updatedUser;
     }
 
+    // Пользователи без id создаются, с id - обновляются; как FilmService.saveBatch.
+    // Email и логин проверяются на повтор внутри пакета и одним запросом - среди сохранённых пользователей,
+    // чтобы совпадение отклоняло только свой элемент, а не весь пакет ошибкой БД
+    @Transactional
+    public List<BatchItemResult> saveBatch(List<User> users) {
+        BatchSupport.checkSize(users);
+
+        BatchItemResult[] results = new BatchItemResult[users.size()];
+        List<User> stored = storedWithSameEmailOrLogin(users);
+        Map<String, Integer> storedEmails = stored.stream()
+                .collect(Collectors.toMap(User::getEmail, User::getId, (first, second) -> first));
+        Map<String, Integer> storedLogins = stored.stream()
+                .collect(Collectors.toMap(User::getLogin, User::getId, (first, second) -> first));
+        Set<String> emails = new HashSet<>();
+        Set<String> logins = new HashSet<>();
+        List<Integer> createIndexes = new ArrayList<>();
+        List<User> toCreate = new ArrayList<>();
+        List<Integer> updateIndexes = new ArrayList<>();
+        List<User> toUpdate = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            String error = BatchSupport.violations(validator, user);
+            if (error == null && emails.contains(user.getEmail())) {
+                error = "Email " + user.getEmail() + " уже встречается в пакете";
+            } else if (error == null && logins.contains(user.getLogin())) {
+                error = "Логин " + user.getLogin() + " уже встречается в пакете";
+            } else if (error == null) {
+                error = storedCollision(user, storedEmails, storedLogins);
+            }
+
+            if (error != null) {
+                results[i] = BatchItemResult.rejected(i, user == null ? null : user.getId(), error);
+                continue;
+            }
+            emails.add(user.getEmail());
+            logins.add(user.getLogin());
+            processNameField(user);
+            if (user.getId() == null) {
+                createIndexes.add(i);
+                toCreate.add(user);
+            } else {
+                updateIndexes.add(i);
+                toUpdate.add(user);
+            }
+        }
+
+        userStorage.createAll(toCreate);
+        for (int i = 0; i < toCreate.size(); i++) {
+            results[createIndexes.get(i)] = BatchItemResult.created(createIndexes.get(i), toCreate.get(i).getId());
+        }
+
+        Set<Integer> updatedIds = userStorage.updateAll(toUpdate).stream()
+                .map(User::getId)
+                .collect(Collectors.toSet());
+        for (int i = 0; i < toUpdate.size(); i++) {
+            int index = updateIndexes.get(i);
+            int id = toUpdate.get(i).getId();
+            results[index] = updatedIds.contains(id)
+                    ? BatchItemResult.updated(index, id)
+                    : BatchItemResult.rejected(index, id, "Не найден пользователь с id:" + id);
+        }
+
+        log.info("saveBatch: items = {}, created = {}, updated = {}",
+                users.size(), toCreate.size(), updatedIds.size());
+        return List.of(results);
+    }
+
+    private List<User> storedWithSameEmailOrLogin(List<User> users) {
+        List<User> candidates = users.stream()
+                .filter(Objects::nonNull)
+                .toList();
+        Set<String> emails = candidates.stream()
+                .map(User::getEmail)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> logins = candidates.stream()
+                .map(User::getLogin)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        return userStorage.getByEmailsOrLogins(emails, logins);
+    }
+
+    // Свой же email и логин при обновлении совпадением не считаются
+    private static String storedCollision(User user, Map<String, Integer> storedEmails,
+                                          Map<String, Integer> storedLogins) {
+        Integer emailOwner = storedEmails.get(user.getEmail());
+        if (emailOwner != null && !emailOwner.equals(user.getId())) {
+            return "Email " + user.getEmail() + " уже занят пользователем с id:" + emailOwner;
+        }
+        Integer loginOwner = storedLogins.get(user.getLogin());
+        if (loginOwner != null && !loginOwner.equals(user.getId())) {
+            return "Логин " + user.getLogin() + " уже занят пользователем с id:" + loginOwner;
+        }
+        return null;
+    }
+
+    @Transactional
     public void deleteById(int id) {
         checkUserExists(id);
 
         userStorage.delete(id);
+        coOccurrenceIndex.userDeleted(id);
+        friendSuggestionIndex.userDeleted(id);
 
         log.info("User deleted: id={}", id);
     }
 
+    @Transactional
     public void addFriend(int userId, int friendId) {
         checkUsers(userId, friendId);
 
         userStorage.addFriend(userId, friendId);
+        friendSuggestionIndex.friendAdded(userId, friendId);
 
         log.info("Friend added: userId={}, friendId={}", userId, friendId);
     }
 
+    @Transactional
     public void deleteFriend(int userId, int friendId) {
         checkUsers(userId, friendId);
 
         userStorage.deleteFriend(userId, friendId);
+        friendSuggestionIndex.friendDeleted(userId, friendId);
 
         log.info("Friend deleted: userId={}, friendId={}", userId, friendId);
     }
@@ -93,6 +221,26 @@ public class UserService {
         return userStorage.getCommonFriends(userId, otherId);
     }
 
+    // Друзья друзей, которые ещё не в друзьях у пользователя, по числу общих друзей
+    public List<User> getFriendSuggestions(int userId, int count) {
+        if (count <= 0) {
+            throw new ValidationException("Параметр count должен быть больше 0");
+        }
+        checkUserExists(userId);
+
+        int[] suggestedIds = friendSuggestionIndex.suggest(userId, count);
+        Map<Integer, User> usersById = userStorage.getByIds(Arrays.stream(suggestedIds).boxed().toList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<User> suggestions = Arrays.stream(suggestedIds)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        log.debug("getFriendSuggestions, userId = {}, count = {}, resultSize = {}",
+                userId, count, suggestions.size());
+        return suggestions;
+    }
+
     private void checkUsers(int userId, int friendId) {
         if (userId == friendId) {
             throw new ValidationException("Пользователь не может быть другом самого себя.");
@@ -102,8 +250,9 @@ public class UserService {
     }
 
     public void checkUserExists(Integer userId) {
-        userStorage.getById(userId)
-                .orElseThrow(() -> new NotFoundException("Не найден пользователь с id:" + userId));
+        if (!userStorage.exists(userId)) {
+            throw new NotFoundException("Не найден пользователь с id:" + userId);
+        }
     }
 
     private void processNameField(User user) {
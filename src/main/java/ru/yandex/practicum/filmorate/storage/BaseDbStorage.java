@@ -5,12 +5,16 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import ru.yandex.practicum.filmorate.exception.DbStorageException;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 @RequiredArgsConstructor
 public class BaseDbStorage<T> {
@@ -33,6 +37,11 @@ public class BaseDbStorage<T> {
         return getOne(query, params);
     }
 
+    protected boolean existsById(String query, int id) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("id", id);
+        return Boolean.TRUE.equals(jdbc.queryForObject(query, params, Boolean.class));
+    }
+
     protected int insertWithKeyReturning(String query, MapSqlParameterSource params) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(query, params, keyHolder);
@@ -44,6 +53,29 @@ public class BaseDbStorage<T> {
         return id;
     }
 
+    // Пакетная вставка; id созданных строк в порядке batchParams
+    protected int[] batchInsertWithKeysReturning(String query, SqlParameterSource[] batchParams) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(query, batchParams, keyHolder, new String[]{"id"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != batchParams.length) {
+            throw new DbStorageException("Не удалось сохранить данные");
+        }
+        return keys.stream()
+                .mapToInt(key -> ((Number) key.values().iterator().next()).intValue())
+                .toArray();
+    }
+
+    // Первая колонка запроса без параметров как int[] - без списка Integer на миллионах строк
+    protected int[] selectIds(String query) {
+        IntStream.Builder ids = IntStream.builder();
+        jdbc.getJdbcTemplate().query(query, rs -> {
+            ids.add(rs.getInt(1));
+        });
+        return ids.build().toArray();
+    }
+
     protected void updateWithCheckResult(String query, MapSqlParameterSource params) {
         int rowsUpdated = jdbc.update(query, params);
         if (rowsUpdated == 0) {
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Версия данных для кэшей поверх БД.
+ * Кэш сохраняет прочитанное значение, только если за время чтения версия не изменилась:
+ * иначе значение, прочитанное до записи, могло бы остаться в кэше после неё.
+ * Внутри транзакции версия увеличивается и сразу, и после её завершения -
+ * пока изменения не зафиксированы, параллельное чтение видит старые данные.
+ */
+public class CacheVersion {
+    private long version;
+
+    // Вызывается после каждой записи; invalidation сбрасывает затронутые записи кэша
+    public void bump(Runnable invalidation) {
+        invalidate(invalidation);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(invalidation);
+                }
+            });
+        }
+    }
+
+    public synchronized long current() {
+        return version;
+    }
+
+    // Читает значение и сохраняет его через store, если за время чтения не было записей
+    public <T> T readThrough(Supplier<T> loader, Consumer<T> store) {
+        long readVersion;
+        synchronized (this) {
+            readVersion = version;
+        }
+
+        T value = loader.get();
+
+        synchronized (this) {
+            if (version == readVersion) {
+                store.accept(value);
+            }
+        }
+        return value;
+    }
+
+    private synchronized void invalidate(Runnable invalidation) {
+        version++;
+        invalidation.run();
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * NamedParameterJdbcTemplate, через который работают все хранилища BaseDbStorage, с кэшем разбора
+ * именованных параметров по тексту запроса и счётчиками попаданий и промахов.
+ * Тексты запросов хранилищ - константы, поэтому после прогрева каждый запрос разбирается один раз;
+ * заметная доля промахов означает, что где-то SQL снова собирается на каждый вызов.
+ * Кэш не вытесняет записи: запросы сверх parseCacheLimit разбираются каждый раз и считаются промахами.
+ */
+public class CachingNamedParameterJdbcTemplate extends NamedParameterJdbcTemplate {
+    private final Map<String, ParsedSql> parsedSqlCache = new ConcurrentHashMap<>();
+    private final int parseCacheLimit;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingNamedParameterJdbcTemplate(JdbcTemplate jdbcTemplate, int parseCacheLimit) {
+        super(jdbcTemplate);
+        this.parseCacheLimit = parseCacheLimit;
+    }
+
+    @Override
+    protected ParsedSql getParsedSql(String sql) {
+        ParsedSql cached = parsedSqlCache.get(sql);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        ParsedSql parsed = NamedParameterUtils.parseSqlStatement(sql);
+        if (parsedSqlCache.size() < parseCacheLimit) {
+            parsedSqlCache.putIfAbsent(sql, parsed);
+        }
+        return parsed;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return parsedSqlCache.size();
+    }
+
+    public double hitRatio() {
+        long hitCount = hits();
+        long total = hitCount + misses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
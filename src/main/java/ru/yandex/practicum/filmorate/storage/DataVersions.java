@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Версии данных, по которым строятся ETag ответов.
+ * Хранилища увеличивают версию ресурса при каждом изменении (с учётом транзакций, как CacheVersion),
+ * контроллеры отдают её в ETag и отвечают 304 Not Modified, не выполняя запрос, пока версия та же.
+ * В ETag входит время запуска приложения: после перезапуска счётчики начинаются заново.
+ */
+@Component
+public class DataVersions {
+    public enum Resource {
+        // Фильмы, их жанры и лайки - всё, что попадает в ответы /films
+        FILMS,
+        GENRES,
+        MPA
+    }
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final Map<Resource, CacheVersion> versions = new EnumMap<>(Resource.class);
+
+    public DataVersions() {
+        for (Resource resource : Resource.values()) {
+            versions.put(resource, new CacheVersion());
+        }
+    }
+
+    public void bump(Resource resource) {
+        versions.get(resource).bump(() -> {
+        });
+    }
+
+    public long version(Resource resource) {
+        return versions.get(resource).current();
+    }
+
+    public String etag(Resource resource) {
+        return etag(resource, version(resource));
+    }
+
+    // Сильный ETag: одинаковая версия - побайтно одинаковый ответ на тот же запрос
+    public String etag(Resource resource, long version) {
+        return "\"" + resource.name().toLowerCase() + "-" + epoch + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,306 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Компактное хранение связей "id -> набор id" (лайки, дружба) на примитивных int без упаковки.
+ * Набор связей узла - неизменяемая строка: отсортированный массив плюс небольшой буфер новых id.
+ * Запись создаёт новую строку (copy-on-write), поэтому чтение идёт без блокировок.
+ * Буфер сливается с основным массивом, когда заполнится, - так вставка не копирует весь массив каждый раз, -
+ * или при чтении: get() публикует слитую строку и отдаёт её массив без копирования, менять его нельзя.
+ * С обратным индексом (withReverseIndex) removeTarget обходит только узлы, связанные с target,
+ * ценой второй копии связей; без него - все узлы. Запись связей с target и removeTarget(target)
+ * вызывающий должен выполнять по очереди, иначе обратный индекс может пропустить новую связь.
+ */
+public class IntAdjacency {
+    static final int APPEND_BUFFER_SIZE = 32;
+    static final int GALLOP_RATIO = 32;
+
+    // Оценки размеров объектов для 64-битной JVM со сжатыми указателями
+    private static final int OBJECT_HEADER_BYTES = 12;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int MAP_ENTRY_BYTES = 32;
+    private static final int BOXED_KEY_BYTES = 16;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<Integer, Row> rows = new ConcurrentHashMap<>();
+    private final LongAdder edges = new LongAdder();
+    // target -> узлы, в наборах которых он есть; null без обратного индекса
+    private final IntAdjacency reverse;
+
+    public IntAdjacency() {
+        this(false);
+    }
+
+    private IntAdjacency(boolean withReverseIndex) {
+        reverse = withReverseIndex ? new IntAdjacency() : null;
+    }
+
+    public static IntAdjacency withReverseIndex() {
+        return new IntAdjacency(true);
+    }
+
+    public boolean add(int node, int target) {
+        boolean[] added = new boolean[1];
+        rows.compute(node, (key, row) -> {
+            if (row == null) {
+                added[0] = true;
+                return new Row(EMPTY, new int[]{target});
+            }
+            if (row.contains(target)) {
+                return row;
+            }
+            added[0] = true;
+            return row.with(target);
+        });
+        if (added[0]) {
+            edges.increment();
+            if (reverse != null) {
+                reverse.add(target, node);
+            }
+        }
+        return added[0];
+    }
+
+    public boolean remove(int node, int target) {
+        boolean[] removed = new boolean[1];
+        rows.computeIfPresent(node, (key, row) -> {
+            if (!row.contains(target)) {
+                return row;
+            }
+            removed[0] = true;
+            Row result = row.without(target);
+            return result.size() == 0 ? null : result;
+        });
+        if (removed[0]) {
+            edges.decrement();
+            if (reverse != null) {
+                reverse.remove(target, node);
+            }
+        }
+        return removed[0];
+    }
+
+    // Удаляет узел со всеми его связями
+    public void removeNode(int node) {
+        Row row = rows.remove(node);
+        if (row != null) {
+            edges.add(-row.size());
+            if (reverse != null) {
+                row.forEach(target -> reverse.remove(target, node));
+            }
+        }
+    }
+
+    // Удаляет target из наборов всех узлов: по обратному индексу, без него - проходом по всем строкам
+    public void removeTarget(int target) {
+        if (reverse != null) {
+            for (int node : reverse.get(target)) {
+                remove(node, target);
+            }
+            return;
+        }
+        for (Integer node : rows.keySet()) {
+            remove(node, target);
+        }
+    }
+
+    public boolean contains(int node, int target) {
+        Row row = rows.get(node);
+        return row != null && row.contains(target);
+    }
+
+    public int degree(int node) {
+        Row row = rows.get(node);
+        return row == null ? 0 : row.size();
+    }
+
+    // Связи узла по возрастанию id. Массив общий с хранилищем - только для чтения
+    public int[] get(int node) {
+        Row row = rows.get(node);
+        if (row == null) {
+            return EMPTY;
+        }
+        if (row.appended.length == 0) {
+            return row.sorted;
+        }
+
+        // Слитая строка публикуется, если строку не успели изменить, - следующие чтения её не сливают
+        Row compacted = new Row(Row.merge(row.sorted, row.appended), EMPTY);
+        rows.replace(node, row, compacted);
+        return compacted.sorted;
+    }
+
+    // Пересечение отсортированных массивов. Если один намного меньше другого,
+    // его элементы ищутся в большом двоичным поиском, иначе - слиянием за один проход
+    public static int[] intersect(int[] sorted1, int[] sorted2) {
+        if (sorted1.length > sorted2.length) {
+            return intersect(sorted2, sorted1);
+        }
+        if ((long) sorted1.length * GALLOP_RATIO < sorted2.length) {
+            return intersectBySearch(sorted1, sorted2);
+        }
+
+        int[] result = new int[Math.min(sorted1.length, sorted2.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < sorted1.length && j < sorted2.length) {
+            if (sorted1[i] < sorted2[j]) {
+                i++;
+            } else if (sorted1[i] > sorted2[j]) {
+                j++;
+            } else {
+                result[size++] = sorted1[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] intersectBySearch(int[] small, int[] large) {
+        int[] result = new int[small.length];
+        int size = 0;
+        int from = 0;
+        for (int value : small) {
+            int index = Arrays.binarySearch(large, from, large.length, value);
+            if (index >= 0) {
+                result[size++] = value;
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+            if (from == large.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public long edgesCount() {
+        return edges.sum();
+    }
+
+    // Оценка занимаемой памяти в байтах: записи карты, строки и их массивы
+    public long memoryFootprint() {
+        long bytes = 0;
+        for (Row row : rows.values()) {
+            bytes += MAP_ENTRY_BYTES + BOXED_KEY_BYTES + Row.SHALLOW_BYTES
+                    + arrayBytes(row.sorted.length) + arrayBytes(row.appended.length);
+        }
+        if (reverse != null) {
+            bytes += reverse.memoryFootprint();
+        }
+        return bytes;
+    }
+
+    public double bytesPerEdge() {
+        long edgesCount = edgesCount();
+        return edgesCount == 0 ? 0 : (double) memoryFootprint() / edgesCount;
+    }
+
+    private static long arrayBytes(int length) {
+        if (length == 0) {
+            return 0;  // пустой массив общий
+        }
+        return align(ARRAY_HEADER_BYTES + 4L * length);
+    }
+
+    // Объекты в куче выравниваются по 8 байт
+    private static long align(long bytes) {
+        return (bytes + 7) / 8 * 8;
+    }
+
+    private static final class Row {
+        private static final long SHALLOW_BYTES = align(OBJECT_HEADER_BYTES + 2 * REFERENCE_BYTES);
+
+        private final int[] sorted;
+        // Недавно добавленные id, не отсортированы и не пересекаются с sorted
+        private final int[] appended;
+
+        private Row(int[] sorted, int[] appended) {
+            this.sorted = sorted;
+            this.appended = appended;
+        }
+
+        private int size() {
+            return sorted.length + appended.length;
+        }
+
+        private boolean contains(int value) {
+            if (Arrays.binarySearch(sorted, value) >= 0) {
+                return true;
+            }
+            for (int appendedValue : appended) {
+                if (appendedValue == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Row with(int value) {
+            int[] newAppended = Arrays.copyOf(appended, appended.length + 1);
+            newAppended[appended.length] = value;
+            if (newAppended.length < APPEND_BUFFER_SIZE) {
+                return new Row(sorted, newAppended);
+            }
+            return new Row(merge(sorted, newAppended), EMPTY);
+        }
+
+        private Row without(int value) {
+            int index = Arrays.binarySearch(sorted, value);
+            if (index >= 0) {
+                int[] newSorted = new int[sorted.length - 1];
+                System.arraycopy(sorted, 0, newSorted, 0, index);
+                System.arraycopy(sorted, index + 1, newSorted, index, newSorted.length - index);
+                return new Row(newSorted.length == 0 ? EMPTY : newSorted, appended);
+            }
+
+            int[] newAppended = new int[appended.length - 1];
+            int size = 0;
+            for (int appendedValue : appended) {
+                if (appendedValue != value) {
+                    newAppended[size++] = appendedValue;
+                }
+            }
+            return new Row(sorted, newAppended.length == 0 ? EMPTY : newAppended);
+        }
+
+        private void forEach(IntConsumer action) {
+            for (int value : sorted) {
+                action.accept(value);
+            }
+            for (int value : appended) {
+                action.accept(value);
+            }
+        }
+
+        private static int[] merge(int[] sorted, int[] unsorted) {
+            int[] tail = unsorted.clone();
+            Arrays.sort(tail);
+
+            int[] result = new int[sorted.length + tail.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < sorted.length && j < tail.length) {
+                result[k++] = sorted[i] < tail[j] ? sorted[i++] : tail[j++];
+            }
+            while (i < sorted.length) {
+                result[k++] = sorted[i++];
+            }
+            while (j < tail.length) {
+                result[k++] = tail[j++];
+            }
+            return result;
+        }
+    }
+}
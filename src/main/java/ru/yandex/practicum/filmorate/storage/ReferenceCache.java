@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Кэш неизменяемого справочника (жанры, рейтинги MPA).
+ * Загружается целиком при первом обращении, элементы хранятся в массиве с индексом по id.
+ * После invalidate() следующее обращение перечитает справочник из источника.
+ * Загрузка идёт под ReentrantLock, а не synchronized: виртуальный поток, ждущий ответа БД
+ * внутри synchronized, занимал бы поток-носитель.
+ */
+public class ReferenceCache<T> {
+    private final Supplier<List<T>> loader;
+    private final ToIntFunction<T> idExtractor;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile Snapshot<T> snapshot;
+
+    public ReferenceCache(Supplier<List<T>> loader, ToIntFunction<T> idExtractor) {
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+    }
+
+    public List<T> getAll() {
+        return snapshot().all;
+    }
+
+    public Optional<T> get(int id) {
+        Object[] byId = snapshot().byId;
+        if (id < 0 || id >= byId.length) {
+            return Optional.empty();
+        }
+        @SuppressWarnings("unchecked")
+        T item = (T) byId[id];
+        return Optional.ofNullable(item);
+    }
+
+    public void invalidate() {
+        loadLock.lock();
+        try {
+            snapshot = null;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private Snapshot<T> snapshot() {
+        Snapshot<T> result = snapshot;
+        if (result == null) {
+            loadLock.lock();
+            try {
+                result = snapshot;
+                if (result == null) {
+                    result = new Snapshot<>(loader.get(), idExtractor);
+                    snapshot = result;
+                }
+            } finally {
+                loadLock.unlock();
+            }
+        }
+        return result;
+    }
+
+    private static final class Snapshot<T> {
+        private final List<T> all;
+        private final Object[] byId;
+
+        private Snapshot(List<T> items, ToIntFunction<T> idExtractor) {
+            all = items.stream()
+                    .sorted(Comparator.comparingInt(idExtractor))
+                    .toList();
+
+            int maxId = all.stream().mapToInt(idExtractor).max().orElse(-1);
+            byId = new Object[maxId + 1];
+            for (T item : all) {
+                byId[idExtractor.applyAsInt(item)] = item;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Набор блокировок, между которыми распределяются ключи (id) по остатку от деления.
+ * Операции над двумя ключами берут обе блокировки в порядке номеров, чтобы не было взаимоблокировок.
+ */
+public class StripedLock {
+    private final ReentrantLock[] stripes;
+
+    public StripedLock(int stripesCount) {
+        stripes = new ReentrantLock[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void runLocked(int key, Runnable action) {
+        callLocked(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T callLocked(int key, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeOf(key)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void runLocked(int key1, int key2, Runnable action) {
+        int stripe1 = stripeOf(key1);
+        int stripe2 = stripeOf(key2);
+        if (stripe1 == stripe2) {
+            runLocked(key1, action);
+            return;
+        }
+
+        ReentrantLock first = stripes[Math.min(stripe1, stripe2)];
+        ReentrantLock second = stripes[Math.max(stripe1, stripe2)];
+        first.lock();
+        try {
+            second.lock();
+            try {
+                action.run();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    private int stripeOf(int key) {
+        return Math.floorMod(key, stripes.length);
+    }
+}
@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.CacheVersion;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище filmorate.storage=cached-jdbc: FilmDbStorage с кэшем чтения фильмов по id и списка популярных.
+ * Запись идёт в БД, после неё затронутые записи кэша сбрасываются.
+ */
+@Component("cachedFilmStorage")
+@Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "cached-jdbc")
+public class CachedFilmStorage implements FilmStorage {
+    private final FilmStorage delegate;
+    private final Map<Integer, Film> films = new ConcurrentHashMap<>();
+    private final CacheVersion version = new CacheVersion();
+    // Последний прочитанный топ; подходит для любого count не больше сохранённого
+    private volatile Popular popular;
+
+    public CachedFilmStorage(FilmDbStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Film> getAll(int afterId, int limit) {
+        return delegate.getAll(afterId, limit);
+    }
+
+    @Override
+    public Optional<Film> getById(int filmId) {
+        Film cached = films.get(filmId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        return version.readThrough(() -> delegate.getById(filmId),
+                found -> found.ifPresent(film -> films.put(filmId, film)));
+    }
+
+    @Override
+    public List<Film> getByIds(Collection<Integer> filmIds) {
+        return delegate.getByIds(filmIds);
+    }
+
+    @Override
+    public void forEach(Consumer<Film> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public boolean exists(int filmId) {
+        return films.containsKey(filmId) || delegate.exists(filmId);
+    }
+
+    @Override
+    public int[] getAllIds() {
+        return delegate.getAllIds();
+    }
+
+    @Override
+    public Film create(Film film) {
+        Film created = delegate.create(film);
+        version.bump(() -> popular = null);
+        return created;
+    }
+
+    @Override
+    public Film update(Film film) {
+        Film updated = delegate.update(film);
+        version.bump(() -> {
+            films.remove(film.getId());
+            popular = null;
+        });
+        return updated;
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> filmsToCreate) {
+        List<Film> created = delegate.createAll(filmsToCreate);
+        version.bump(() -> popular = null);
+        return created;
+    }
+
+    @Override
+    public List<Film> updateAll(List<Film> filmsToUpdate) {
+        List<Film> updated = delegate.updateAll(filmsToUpdate);
+        version.bump(() -> {
+            updated.forEach(film -> films.remove(film.getId()));
+            popular = null;
+        });
+        return updated;
+    }
+
+    @Override
+    public void delete(int filmId) {
+        delegate.delete(filmId);
+        version.bump(() -> {
+            films.remove(filmId);
+            popular = null;
+        });
+    }
+
+    @Override
+    public void addLike(int filmId, int userId) {
+        delegate.addLike(filmId, userId);
+        version.bump(() -> popular = null);
+    }
+
+    @Override
+    public void deleteLike(int filmId, int userId) {
+        delegate.deleteLike(filmId, userId);
+        version.bump(() -> popular = null);
+    }
+
+    @Override
+    public List<Like> addLikes(Collection<Like> likes) {
+        List<Like> added = delegate.addLikes(likes);
+        version.bump(() -> popular = null);
+        return added;
+    }
+
+    @Override
+    public List<Like> deleteLikes(Collection<Like> likes) {
+        List<Like> deleted = delegate.deleteLikes(likes);
+        version.bump(() -> popular = null);
+        return deleted;
+    }
+
+    @Override
+    public void forEachLike(Consumer<Like> action) {
+        delegate.forEachLike(action);
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        Popular cached = popular;
+        if (cached != null && (count <= cached.count() || cached.films().size() < cached.count())) {
+            return cached.films().subList(0, Math.min(count, cached.films().size()));
+        }
+
+        return version.readThrough(() -> delegate.getPopular(count),
+                result -> popular = new Popular(count, List.copyOf(result)));
+    }
+
+    // Топы с фильтрами не кэшируются: их много, и каждый и так читается по индексу
+    @Override
+    public List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year) {
+        return delegate.getPopular(count, genreId, mpaId, year);
+    }
+
+    // Удаление пользователя удаляет и его лайки
+    public void evictPopular() {
+        version.bump(() -> popular = null);
+    }
+
+    // Если фильмов меньше, чем count, то в списке все фильмы - он подходит и для большего count
+    private record Popular(int count, List<Film> films) {
+    }
+}
@@ -1,20 +1,45 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Repository("filmDbStorage")
+@ConditionalOnExpression("'${filmorate.storage:jdbc}' != 'memory'")
+@Slf4j
 public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
     private static final String BASE_SELECT_FILMS_QUERY = """
             SELECT f.id,
@@ -29,129 +54,452 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
             LEFT JOIN mpa_ratings m ON m.id = f.mpa_rating_id
             """;
 
-    public FilmDbStorage(NamedParameterJdbcTemplate jdbc, RowMapper<Film> mapper) {
+    private static final String INSERT_FILM_QUERY = """
+            INSERT INTO films(name, description, release_date, release_year, duration, mpa_rating_id)
+            VALUES (:name, :description, :release_date, :release_year, :duration, :mpa_rating_id)
+            """;
+    private static final String UPDATE_FILM_QUERY = """
+            UPDATE films SET
+            name          =  :name,
+            description   =  :description,
+            release_date  =  :release_date,
+            release_year  =  :release_year,
+            duration      =  :duration,
+            mpa_rating_id =  :mpa_rating_id
+            WHERE id = :id
+            """;
+
+    private static final String SELECT_FILMS_PAGE_QUERY = BASE_SELECT_FILMS_QUERY
+            + "\n" + """
+            WHERE f.id > :afterId
+            ORDER BY f.id
+            LIMIT :limit
+            """;
+
+    private static final String SELECT_FILM_BY_ID_QUERY = BASE_SELECT_FILMS_QUERY
+            + "\nWHERE f.id = :id";
+
+    private static final String SELECT_FILMS_BY_IDS_QUERY = BASE_SELECT_FILMS_QUERY
+            + "\n" + """
+            WHERE f.id IN (:ids)
+            ORDER BY f.id
+            """;
+
+    private static final String EXPORT_FILMS_QUERY = """
+            SELECT f.id,
+                   f.name,
+                   f.description,
+                   f.release_date,
+                   f.duration,
+                   f.mpa_rating_id AS mpa_rating_id,
+                   m.name          AS mpa_name,
+                   m.age           AS mpa_age,
+                   fg.genre_id     AS genre_id,
+                   g.name          AS genre_name
+            FROM films f
+            LEFT JOIN mpa_ratings m ON m.id = f.mpa_rating_id
+            LEFT JOIN film_genres fg ON fg.film_id = f.id
+            LEFT JOIN genres g ON g.id = fg.genre_id
+            ORDER BY f.id, fg.genre_id
+            """;
+
+    private static final String SELECT_FILM_IDS_QUERY = "SELECT id FROM films ORDER BY id";
+
+    private static final String FILM_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM films WHERE id = :id)
+            """;
+
+    private static final String DELETE_GENRES_OF_FILMS_QUERY = """
+            DELETE FROM film_genres
+            WHERE film_id IN (:film_ids)
+            """;
+
+    private static final String DELETE_FILM_QUERY = """
+            DELETE from films
+            WHERE id = :id
+            """;
+
+    private static final String INSERT_LIKE_QUERY = """
+            INSERT INTO likes(film_id, user_id)
+            VALUES (:filmId, :userId);
+            """;
+
+    private static final String DELETE_LIKE_QUERY = """
+            DELETE FROM likes
+            WHERE user_id = :userId AND film_id = :filmId
+            """;
+
+    // Источник MERGE соединён с films и users: лайк удалённого фильма или пользователя просто не вставится.
+    // Без WHEN MATCHED счётчик строк показывает, был ли лайк новым
+    private static final String MERGE_LIKE_QUERY = """
+            MERGE INTO likes l
+            USING (SELECT f.id AS film_id, u.id AS user_id
+                   FROM films f, users u
+                   WHERE f.id = :filmId AND u.id = :userId) s
+            ON l.film_id = s.film_id AND l.user_id = s.user_id
+            WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)
+            """;
+
+    private static final String SELECT_LIKES_QUERY = "SELECT film_id, user_id FROM likes";
+
+    private static final String SELECT_POPULAR_QUERY = BASE_SELECT_FILMS_QUERY
+            + "\n" + """
+            ORDER BY f.likes_count DESC,
+                     f.id
+            LIMIT :count
+            """;
+
+    // Топ с фильтром идёт по составному индексу (поле фильтра, likes_count DESC, id) и останавливается на LIMIT.
+    // Поле фильтра есть и в ORDER BY: при равенстве в WHERE порядок тот же, а H2 видит, что индекс уже
+    // отсортирован. Остальные фильтры проверяются на строках индекса; 0 в :mpaId и :year - без фильтра
+    private static final String SELECT_POPULAR_BY_GENRE_QUERY = """
+            SELECT f.id,
+                   f.name,
+                   f.description,
+                   f.release_date,
+                   f.duration,
+                   f.mpa_rating_id AS mpa_rating_id,
+                   m.name          AS mpa_name,
+                   m.age           AS mpa_age
+            FROM film_genres fg
+            JOIN films f ON f.id = fg.film_id
+            LEFT JOIN mpa_ratings m ON m.id = f.mpa_rating_id
+            WHERE fg.genre_id = :genreId
+              AND (:mpaId = 0 OR f.mpa_rating_id = :mpaId)
+              AND (:year = 0 OR f.release_year = :year)
+            ORDER BY fg.genre_id,
+                     fg.likes_count DESC,
+                     fg.film_id
+            LIMIT :count
+            """;
+
+    private static final String SELECT_POPULAR_BY_YEAR_QUERY = BASE_SELECT_FILMS_QUERY
+            + "\n" + """
+            WHERE f.release_year = :year
+              AND (:mpaId = 0 OR f.mpa_rating_id = :mpaId)
+            ORDER BY f.release_year,
+                     f.likes_count DESC,
+                     f.id
+            LIMIT :count
+            """;
+
+    private static final String SELECT_POPULAR_BY_MPA_QUERY = BASE_SELECT_FILMS_QUERY
+            + "\n" + """
+            WHERE f.mpa_rating_id = :mpaId
+            ORDER BY f.mpa_rating_id,
+                     f.likes_count DESC,
+                     f.id
+            LIMIT :count
+            """;
+
+    private static final String RECALCULATE_LIKES_COUNT_QUERY = """
+            UPDATE films f
+            SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+            WHERE likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+            """;
+
+    // Копия счётчика в film_genres выравнивается по films - после RECALCULATE_LIKES_COUNT_QUERY
+    private static final String RECALCULATE_GENRE_LIKES_COUNT_QUERY = """
+            UPDATE film_genres fg
+            SET likes_count = (SELECT f.likes_count FROM films f WHERE f.id = fg.film_id)
+            WHERE likes_count <> (SELECT f.likes_count FROM films f WHERE f.id = fg.film_id)
+            """;
+
+    private static final String CHANGE_LIKES_COUNT_QUERY = """
+            UPDATE films
+            SET likes_count = likes_count + :delta
+            WHERE id = :filmId
+            """;
+
+    // Выполняется после CHANGE_LIKES_COUNT_QUERY. update тоже сначала меняет строку films, а потом жанры,
+    // поэтому лайк и смена жанров фильма идут по очереди и новый жанр не копирует счётчик без лайка
+    private static final String CHANGE_GENRE_LIKES_COUNT_QUERY = """
+            UPDATE film_genres
+            SET likes_count = likes_count + :delta
+            WHERE film_id = :filmId
+            """;
+
+    private static final String SELECT_GENRE_IDS_OF_FILM_QUERY = """
+            SELECT genre_id
+            FROM film_genres
+            WHERE film_id = :film_id
+            """;
+
+    private static final String DELETE_FILM_GENRES_QUERY = """
+            DELETE FROM film_genres
+            WHERE film_id = :film_id AND genre_id IN (:genre_ids)
+            """;
+
+    // Новый жанр получает текущий счётчик лайков фильма
+    private static final String INSERT_FILM_GENRE_QUERY = """
+            INSERT INTO film_genres(film_id, genre_id, likes_count)
+            SELECT :film_id, :genre_id, likes_count
+            FROM films
+            WHERE id = :film_id
+            """;
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private final GenreDbStorage genreDbStorage;
+    private final DataVersions dataVersions;
+
+    public FilmDbStorage(NamedParameterJdbcTemplate jdbc, RowMapper<Film> mapper, GenreDbStorage genreDbStorage,
+                         DataVersions dataVersions) {
         super(jdbc, mapper);
+        this.genreDbStorage = genreDbStorage;
+        this.dataVersions = dataVersions;
     }
 
     @Override
-    public List<Film> getAll() {
-        String query = BASE_SELECT_FILMS_QUERY
-                + "\nORDER BY f.id";
+    public List<Film> getAll(int afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
 
-        return jdbc.query(query, mapper);
+        List<Film> films = jdbc.query(SELECT_FILMS_PAGE_QUERY, params, mapper);
+        genreDbStorage.joinGenresToFilms(films);
+
+        return films;
     }
 
     @Override
     public Optional<Film> getById(int filmId) {
-        String query = BASE_SELECT_FILMS_QUERY
-                + "\nWHERE f.id = :id";
+        Optional<Film> film = getOneById(SELECT_FILM_BY_ID_QUERY, filmId);
+        film.ifPresent(found -> genreDbStorage.joinGenresToFilms(List.of(found)));
+
+        return film;
+    }
+
+    @Override
+    public List<Film> getByIds(Collection<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("ids", filmIds);
+
+        List<Film> films = jdbc.query(SELECT_FILMS_BY_IDS_QUERY, params, mapper);
+        genreDbStorage.joinGenresToFilms(films);
+
+        return films;
+    }
 
-        return getOneById(query, filmId);
+    @Override
+    public void forEach(Consumer<Film> action) {
+        // Фильмы и их жанры читаются одним упорядоченным курсором: строки одного фильма идут подряд
+        FilmWithGenresCollector collector = new FilmWithGenresCollector(action);
+
+        jdbc.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_FILMS_QUERY);
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            return statement;
+        }, collector);
+        collector.finish();
+    }
+
+    @Override
+    public boolean exists(int filmId) {
+        return existsById(FILM_EXISTS_QUERY, filmId);
     }
 
     @Override
+    public int[] getAllIds() {
+        return selectIds(SELECT_FILM_IDS_QUERY);
+    }
+
+    @Override
+    @Transactional
     public Film create(Film filmToCreate) {
-        String createFilmQuery = """
-                INSERT INTO films(name, description, release_date, duration, mpa_rating_id)
-                VALUES (:name, :description, :release_date, :duration, :mpa_rating_id);
-                """;
         MapSqlParameterSource params = paramsForCreation(filmToCreate);
 
-        int id = insertWithKeyReturning(createFilmQuery, params);
+        int id = insertWithKeyReturning(INSERT_FILM_QUERY, params);
         filmToCreate.setId(id);
 
-        if (filmToCreate.getGenres() != null) {
-            insertFilmGenres(filmToCreate);
-        }
+        insertFilmGenres(id, genreIdsOf(filmToCreate));
+        dataVersions.bump(DataVersions.Resource.FILMS);
 
         return filmToCreate;
     }
 
     @Override
+    @Transactional
     public Film update(Film film) {
-        String updateFilmQuery = """
-                UPDATE films SET
-                name          =  :name,
-                description   =  :description,
-                release_date  =  :release_date,
-                duration      =  :duration,
-                mpa_rating_id =  :mpa_rating_id
-                WHERE id = :id
-                """;
         MapSqlParameterSource params = paramsForCreation(film).addValue("id", film.getId());
-        updateWithCheckResult(updateFilmQuery, params);
+        updateWithCheckResult(UPDATE_FILM_QUERY, params);
 
-        String deleteFilmGenresQuery = """
-                DELETE FROM film_genres
-                WHERE film_id = :film_id
-                """;
-        jdbc.update(deleteFilmGenresQuery, new MapSqlParameterSource()
-                .addValue("film_id", film.getId()));
+        updateFilmGenres(film);
+        dataVersions.bump(DataVersions.Resource.FILMS);
 
-        if (film.getGenres() != null) {
-            insertFilmGenres(film);
+        return film;
+    }
+
+    @Override
+    @Transactional
+    public List<Film> createAll(List<Film> filmsToCreate) {
+        if (filmsToCreate.isEmpty()) {
+            return filmsToCreate;
         }
+        SqlParameterSource[] batchParams = filmsToCreate.stream()
+                .map(this::paramsForCreation)
+                .toArray(SqlParameterSource[]::new);
 
-        return film;
+        int[] ids = batchInsertWithKeysReturning(INSERT_FILM_QUERY, batchParams);
+        for (int i = 0; i < ids.length; i++) {
+            filmsToCreate.get(i).setId(ids[i]);
+        }
+
+        insertGenresOf(filmsToCreate);
+        dataVersions.bump(DataVersions.Resource.FILMS);
+
+        return filmsToCreate;
+    }
+
+    @Override
+    @Transactional
+    public List<Film> updateAll(List<Film> filmsToUpdate) {
+        if (filmsToUpdate.isEmpty()) {
+            return List.of();
+        }
+        SqlParameterSource[] batchParams = filmsToUpdate.stream()
+                .map(film -> paramsForCreation(film).addValue("id", film.getId()))
+                .toArray(SqlParameterSource[]::new);
+
+        int[] rowsUpdated = jdbc.batchUpdate(UPDATE_FILM_QUERY, batchParams);
+        List<Film> updated = new ArrayList<>();
+        for (int i = 0; i < rowsUpdated.length; i++) {
+            if (rowsUpdated[i] > 0) {
+                updated.add(filmsToUpdate.get(i));
+            }
+        }
+        if (updated.isEmpty()) {
+            return updated;
+        }
+
+        // Жанры пишутся заново; если фильм встретился в пакете дважды, действует последнее изменение
+        Map<Integer, Film> lastById = new LinkedHashMap<>();
+        updated.forEach(film -> lastById.put(film.getId(), film));
+        jdbc.update(DELETE_GENRES_OF_FILMS_QUERY, new MapSqlParameterSource().addValue("film_ids", lastById.keySet()));
+        insertGenresOf(lastById.values());
+        dataVersions.bump(DataVersions.Resource.FILMS);
+
+        return updated;
     }
 
     @Override
     public void delete(int filmId) {
-        String deleteQuery = """
-                DELETE from films
-                WHERE id = :id
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("id", filmId);
-        jdbc.update(deleteQuery, params);
+        jdbc.update(DELETE_FILM_QUERY, params);
+        dataVersions.bump(DataVersions.Resource.FILMS);
     }
 
     @Override
+    @Transactional
     public void addLike(int filmId, int userId) {
-        String addLikeQuery = """
-                INSERT INTO likes(film_id, user_id)
-                VALUES (:filmId, :userId);
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("filmId", filmId)
                 .addValue("userId", userId);
 
         try {
-            jdbc.update(addLikeQuery, params);
+            jdbc.update(INSERT_LIKE_QUERY, params);
         } catch (DuplicateKeyException ex) {
-            // Такой ключ уже есть
+            // Такой ключ уже есть - счётчик не меняется
+            return;
         }
+
+        changeLikesCount(filmId, 1);
+        dataVersions.bump(DataVersions.Resource.FILMS);
     }
 
     @Override
+    @Transactional
     public void deleteLike(int filmId, int userId) {
-        String deleteLikeQuery = """
-                DELETE FROM likes
-                WHERE user_id = :userId AND film_id = :filmId
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("filmId", filmId)
                 .addValue("userId", userId);
 
-        jdbc.update(deleteLikeQuery, params);
+        int rowsDeleted = jdbc.update(DELETE_LIKE_QUERY, params);
+        if (rowsDeleted > 0) {
+            changeLikesCount(filmId, -rowsDeleted);
+            dataVersions.bump(DataVersions.Resource.FILMS);
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<Like> addLikes(Collection<Like> likes) {
+        List<Like> added = changedLikes(likes, jdbc.batchUpdate(MERGE_LIKE_QUERY, likeParams(likes)));
+        changeLikesCounts(added, 1);
+        dataVersions.bump(DataVersions.Resource.FILMS);
+        return added;
+    }
+
+    @Override
+    @Transactional
+    public List<Like> deleteLikes(Collection<Like> likes) {
+        List<Like> deleted = changedLikes(likes, jdbc.batchUpdate(DELETE_LIKE_QUERY, likeParams(likes)));
+        changeLikesCounts(deleted, -1);
+        dataVersions.bump(DataVersions.Resource.FILMS);
+        return deleted;
+    }
+
+    @Override
+    public void forEachLike(Consumer<Like> action) {
+        jdbc.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_LIKES_QUERY);
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> action.accept(new Like(rs.getInt("film_id"), rs.getInt("user_id"))));
     }
 
     @Override
     public List<Film> getPopular(int count) {
-        String popularQuery = BASE_SELECT_FILMS_QUERY
-                + "\n" + """
-                LEFT JOIN
-                    (SELECT l.film_id AS film_id,
-                    COUNT(l.user_id) AS amountOfLikes
-                    FROM likes l
-                    GROUP BY l.film_id) q
-                ON q.film_id = f.id
-                ORDER BY COALESCE(q.amountOfLikes, 0) DESC,
-                         f.id
-                LIMIT :count
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("count", count);
 
-        return jdbc.query(popularQuery, params, mapper);
+        List<Film> popular = jdbc.query(SELECT_POPULAR_QUERY, params, mapper);
+        genreDbStorage.joinGenresToFilms(popular);
+
+        return popular;
+    }
+
+    @Override
+    public List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year) {
+        // Ведущий индекс: жанра (его порядок есть только в film_genres), иначе года - он избирательнее
+        // рейтинга, которых всего пять
+        String query;
+        if (genreId != null) {
+            query = SELECT_POPULAR_BY_GENRE_QUERY;
+        } else if (year != null) {
+            query = SELECT_POPULAR_BY_YEAR_QUERY;
+        } else if (mpaId != null) {
+            query = SELECT_POPULAR_BY_MPA_QUERY;
+        } else {
+            return getPopular(count);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("count", count)
+                .addValue("genreId", genreId)
+                .addValue("mpaId", mpaId == null ? 0 : mpaId)
+                .addValue("year", year == null ? 0 : year);
+
+        List<Film> popular = jdbc.query(query, params, mapper);
+        genreDbStorage.joinGenresToFilms(popular);
+
+        return popular;
+    }
+
+    // Пересчёт films.likes_count (и его копии в film_genres) по таблице likes: исправляет расхождения счётчика,
+    // например после аварийной остановки. Выполняется при каждом старте приложения.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public int recalculateLikesCount() {
+        int rowsUpdated = jdbc.update(RECALCULATE_LIKES_COUNT_QUERY, new MapSqlParameterSource());
+        if (rowsUpdated > 0) {
+            log.warn("Исправлен счётчик лайков у {} фильмов", rowsUpdated);
+        }
+        int genreRowsUpdated = jdbc.update(RECALCULATE_GENRE_LIKES_COUNT_QUERY, new MapSqlParameterSource());
+        if (genreRowsUpdated > 0) {
+            log.warn("Исправлен счётчик лайков у {} связей фильм-жанр", genreRowsUpdated);
+        }
+        return rowsUpdated;
     }
 
     private MapSqlParameterSource paramsForCreation(Film film) {
@@ -172,21 +520,143 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
                 .addValue("name", film.getName())
                 .addValue("description", film.getDescription())
                 .addValue("release_date", sqlReleaseDate)
+                .addValue("release_year", releaseDate == null ? null : releaseDate.getYear())
                 .addValue("duration", film.getDuration())
                 .addValue("mpa_rating_id", mpaRatingId);
     }
 
-    private void insertFilmGenres(Film film) {
-        String insertGenres = """
-                INSERT INTO film_genres(film_id, genre_id)
-                VALUES (:film_id, :genre_id)
-                """;
-        for (Genre genre : film.getGenres()) {
-            MapSqlParameterSource genresParams = new MapSqlParameterSource()
-                    .addValue("film_id", film.getId())
-                    .addValue("genre_id", genre.getId());
+    private void changeLikesCount(int filmId, int delta) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("filmId", filmId)
+                .addValue("delta", delta);
+
+        jdbc.update(CHANGE_LIKES_COUNT_QUERY, params);
+        jdbc.update(CHANGE_GENRE_LIKES_COUNT_QUERY, params);
+    }
+
+    private SqlParameterSource[] likeParams(Collection<Like> likes) {
+        return likes.stream()
+                .map(like -> new MapSqlParameterSource()
+                        .addValue("filmId", like.getFilmId())
+                        .addValue("userId", like.getUserId()))
+                .toArray(SqlParameterSource[]::new);
+    }
+
+    // rowsChanged - результат пакетной записи лайков в том же порядке, что и likes
+    // Лайки пакета, строки которых вставлены или удалены; дубликаты и несуществующие пары пропускаются
+    private static List<Like> changedLikes(Collection<Like> likes, int[] rowsChanged) {
+        List<Like> changed = new ArrayList<>();
+        int i = 0;
+        for (Like like : likes) {
+            if (rowsChanged[i++] > 0) {
+                changed.add(like);
+            }
+        }
+        return changed;
+    }
+
+    private void changeLikesCounts(List<Like> likes, int sign) {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        for (Like like : likes) {
+            deltas.merge(like.getFilmId(), sign, Integer::sum);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] batchParams = deltas.entrySet().stream()
+                .map(delta -> new MapSqlParameterSource()
+                        .addValue("filmId", delta.getKey())
+                        .addValue("delta", delta.getValue()))
+                .toArray(SqlParameterSource[]::new);
+
+        jdbc.batchUpdate(CHANGE_LIKES_COUNT_QUERY, batchParams);
+        jdbc.batchUpdate(CHANGE_GENRE_LIKES_COUNT_QUERY, batchParams);
+    }
+
+    // Пишет только разницу между текущими и новыми жанрами фильма
+    private void updateFilmGenres(Film film) {
+        int filmId = film.getId();
+        Set<Integer> newGenreIds = genreIdsOf(film);
+
+        Set<Integer> currentGenreIds = new HashSet<>(jdbc.queryForList(SELECT_GENRE_IDS_OF_FILM_QUERY,
+                new MapSqlParameterSource().addValue("film_id", filmId), Integer.class));
+
+        Set<Integer> removedGenreIds = new HashSet<>(currentGenreIds);
+        removedGenreIds.removeAll(newGenreIds);
+        if (!removedGenreIds.isEmpty()) {
+            jdbc.update(DELETE_FILM_GENRES_QUERY, new MapSqlParameterSource()
+                    .addValue("film_id", filmId)
+                    .addValue("genre_ids", removedGenreIds));
+        }
+
+        Set<Integer> addedGenreIds = new HashSet<>(newGenreIds);
+        addedGenreIds.removeAll(currentGenreIds);
+        insertFilmGenres(filmId, addedGenreIds);
+    }
+
+    private void insertFilmGenres(int filmId, Set<Integer> genreIds) {
+        if (genreIds.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batchParams = genreIds.stream()
+                .map(genreId -> new MapSqlParameterSource()
+                        .addValue("film_id", filmId)
+                        .addValue("genre_id", genreId))
+                .toArray(SqlParameterSource[]::new);
+
+        jdbc.batchUpdate(INSERT_FILM_GENRE_QUERY, batchParams);
+    }
+
+    private void insertGenresOf(Collection<Film> films) {
+        SqlParameterSource[] batchParams = films.stream()
+                .flatMap(film -> genreIdsOf(film).stream()
+                        .map(genreId -> new MapSqlParameterSource()
+                                .addValue("film_id", film.getId())
+                                .addValue("genre_id", genreId)))
+                .toArray(SqlParameterSource[]::new);
+        if (batchParams.length > 0) {
+            jdbc.batchUpdate(INSERT_FILM_GENRE_QUERY, batchParams);
+        }
+    }
+
+    private Set<Integer> genreIdsOf(Film film) {
+        if (film.getGenres() == null) {
+            return Set.of();
+        }
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private class FilmWithGenresCollector implements RowCallbackHandler {
+        private final Consumer<Film> action;
+        private Film current;
+
+        private FilmWithGenresCollector(Consumer<Film> action) {
+            this.action = action;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int filmId = rs.getInt("id");
+            if (current == null || current.getId() != filmId) {
+                finish();
+                current = mapper.mapRow(rs, rs.getRow());
+                current.setGenres(new LinkedHashSet<>());
+            }
+
+            Integer genreId = rs.getObject("genre_id", Integer.class);
+            if (genreId != null) {
+                current.getGenres().add(new Genre(genreId, rs.getString("genre_name")));
+            }
+        }
 
-            updateWithCheckResult(insertGenres, genresParams);
+        private void finish() {
+            if (current != null) {
+                action.accept(current);
+                current = null;
+            }
         }
     }
 }
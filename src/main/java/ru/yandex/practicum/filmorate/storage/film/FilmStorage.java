@@ -1,25 +1,59 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
-    List<Film> getAll();
+    // Страница фильмов с id > afterId в порядке возрастания id
+    List<Film> getAll(int afterId, int limit);
 
     Optional<Film> getById(int filmId);
 
+    // Фильмы с указанными id вместе с жанрами в порядке возрастания id; несуществующие id пропускаются
+    List<Film> getByIds(Collection<Integer> filmIds);
+
+    // Обход всех фильмов вместе с жанрами в порядке возрастания id, без загрузки в память всего списка
+    void forEach(Consumer<Film> action);
+
+    boolean exists(int filmId);
+
+    // Id всех фильмов по возрастанию
+    int[] getAllIds();
+
     Film create(Film film);
 
     Film update(Film film);
 
+    // Пакетные версии create/update. createAll проставляет фильмам id;
+    // updateAll возвращает обновлённые фильмы - фильмов с несуществующими id в результате нет
+    List<Film> createAll(List<Film> films);
+
+    List<Film> updateAll(List<Film> films);
+
     void delete(int filmId);
 
     void addLike(int filmId, int userId);
 
     void deleteLike(int filmId, int userId);
 
+    // Пакетные версии addLike/deleteLike; лайки несуществующих фильмов и пользователей пропускаются.
+    // Возвращают только лайки, которые действительно добавлены или удалены
+    List<Like> addLikes(Collection<Like> likes);
+
+    List<Like> deleteLikes(Collection<Like> likes);
+
+    // Обход всех лайков без загрузки таблицы в память; порядок не определён
+    void forEachLike(Consumer<Like> action);
+
     List<Film> getPopular(int count);
+
+    // Популярные фильмы жанра, рейтинга и года выпуска в том же порядке, что getPopular;
+    // null - без фильтра по этому полю
+    List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year);
 }
@@ -1,25 +1,53 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.DbStorageException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.IntAdjacency;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Component("inMemoryFilmStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Integer, Film> films = new HashMap<>();
-    private final Map<Integer, Set<Integer>> likesByUsers = new HashMap<>();
-    private int nextId = 0;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentNavigableMap<Integer, Film> films = new ConcurrentSkipListMap<>();
+    // Фильм -> id пользователей, поставивших лайк; обратный индекс - для удаления пользователя
+    private final IntAdjacency likesByUsers = IntAdjacency.withReverseIndex();
+    private final AtomicInteger nextId = new AtomicInteger();
+    // Защищает связку "фильм существует - лайк добавлен" от одновременного удаления фильма
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
+    // Лайк и удаление пользователя сериализуются по id пользователя; берётся после блокировки фильма
+    private final StripedLock userLocks = new StripedLock(LOCK_STRIPES);
+    // id удалённых пользователей не переиспользуются, лайк от них уже не добавится
+    private final Set<Integer> deletedUsers = ConcurrentHashMap.newKeySet();
+    private final DataVersions dataVersions;
+
+    public InMemoryFilmStorage(DataVersions dataVersions) {
+        this.dataVersions = dataVersions;
+    }
 
     @Override
-    public List<Film> getAll() {
-        return films.values().stream().toList();
+    public List<Film> getAll(int afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .toList();
     }
 
     @Override
@@ -27,11 +55,39 @@ public class InMemoryFilmStorage implements FilmStorage {
         return Optional.ofNullable(films.get(filmId));
     }
 
+    @Override
+    public List<Film> getByIds(Collection<Integer> filmIds) {
+        return filmIds.stream()
+                .distinct()
+                .sorted()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public void forEach(Consumer<Film> action) {
+        films.values().forEach(action);
+    }
+
+    @Override
+    public boolean exists(int filmId) {
+        return films.containsKey(filmId);
+    }
+
+    @Override
+    public int[] getAllIds() {
+        return films.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
     @Override
     public Film create(Film newFilm) {
-        int newId = getNextId();
+        int newId = nextId.incrementAndGet();
         newFilm.setId(newId);
         films.put(newId, newFilm);
+        dataVersions.bump(DataVersions.Resource.FILMS);
 
         return newFilm;
     }
@@ -39,41 +95,118 @@ public class InMemoryFilmStorage implements FilmStorage {
     @Override
     public Film update(Film filmToUpdate) {
         int id = filmToUpdate.getId();
-        films.put(id, filmToUpdate);
+        if (films.replace(id, filmToUpdate) == null) {
+            throw new DbStorageException("Не удалось обновить данные");
+        }
+        dataVersions.bump(DataVersions.Resource.FILMS);
 
         return filmToUpdate;
     }
 
+    @Override
+    public List<Film> createAll(List<Film> filmsToCreate) {
+        filmsToCreate.forEach(this::create);
+        return filmsToCreate;
+    }
+
+    @Override
+    public List<Film> updateAll(List<Film> filmsToUpdate) {
+        List<Film> updated = new ArrayList<>();
+        for (Film film : filmsToUpdate) {
+            if (films.replace(film.getId(), film) != null) {
+                updated.add(film);
+            }
+        }
+        dataVersions.bump(DataVersions.Resource.FILMS);
+        return updated;
+    }
+
     @Override
     public void delete(int filmId) {
-        films.remove(filmId);
+        locks.runLocked(filmId, () -> {
+            films.remove(filmId);
+            likesByUsers.removeNode(filmId);
+        });
+        dataVersions.bump(DataVersions.Resource.FILMS);
+    }
+
+    // Удаление пользователя убирает его лайки, как ON DELETE CASCADE таблицы likes
+    public void userDeleted(int userId) {
+        userLocks.runLocked(userId, () -> {
+            deletedUsers.add(userId);
+            likesByUsers.removeTarget(userId);
+        });
+        dataVersions.bump(DataVersions.Resource.FILMS);
     }
 
     @Override
     public void addLike(int filmId, int userId) {
-        likesByUsers.computeIfAbsent(filmId, key -> new HashSet<>()).add(userId);
+        tryAddLike(filmId, userId);
+        dataVersions.bump(DataVersions.Resource.FILMS);
     }
 
     @Override
     public void deleteLike(int filmId, int userId) {
-        Set<Integer> likes = likesByUsers.get(filmId);
-        likes.remove(userId);
+        tryDeleteLike(filmId, userId);
+        dataVersions.bump(DataVersions.Resource.FILMS);
     }
 
     @Override
-    public List<Film> getPopular(int count) {
-        return likesByUsers.entrySet().stream()
-                .sorted((e1, e2) -> Integer.compare(e2.getValue().size(), e1.getValue().size()))
-                .map(Map.Entry::getKey)
-                .limit(count)
-                .map(films::get)
-                .filter(Objects::nonNull)
+    public List<Like> addLikes(Collection<Like> likes) {
+        List<Like> added = new ArrayList<>();
+        for (Like like : likes) {
+            if (tryAddLike(like.getFilmId(), like.getUserId())) {
+                added.add(like);
+            }
+        }
+        dataVersions.bump(DataVersions.Resource.FILMS);
+        return added;
+    }
+
+    @Override
+    public List<Like> deleteLikes(Collection<Like> likes) {
+        List<Like> deleted = likes.stream()
+                .filter(like -> tryDeleteLike(like.getFilmId(), like.getUserId()))
                 .toList();
+        dataVersions.bump(DataVersions.Resource.FILMS);
+        return deleted;
+    }
+
+    // Лайк добавляется, только если фильм и пользователь ещё существуют
+    private boolean tryAddLike(int filmId, int userId) {
+        return locks.callLocked(filmId, () -> userLocks.callLocked(userId, () ->
+                films.containsKey(filmId) && !deletedUsers.contains(userId) && likesByUsers.add(filmId, userId)));
     }
 
-    private int getNextId() {
-        nextId++;
-        return nextId;
+    private boolean tryDeleteLike(int filmId, int userId) {
+        return locks.callLocked(filmId, () -> userLocks.callLocked(userId, () -> likesByUsers.remove(filmId, userId)));
+    }
+
+    @Override
+    public void forEachLike(Consumer<Like> action) {
+        for (int filmId : getAllIds()) {
+            for (int userId : likesByUsers.get(filmId)) {
+                action.accept(new Like(filmId, userId));
+            }
+        }
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        return getPopular(count, null, null, null);
+    }
+
+    @Override
+    public List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year) {
+        return films.values().stream()
+                .filter(film -> genreId == null || (film.getGenres() != null && film.getGenres().stream()
+                        .anyMatch(genre -> genre.getId() == genreId)))
+                .filter(film -> mpaId == null || (film.getMpa() != null && film.getMpa().getId() == mpaId))
+                .filter(film -> year == null || film.getReleaseDate().getYear() == year)
+                .sorted(Comparator.comparingInt((Film film) -> likesByUsers.degree(film.getId())).reversed()
+                        .thenComparing(Film::getId))
+                .limit(count)
+                .toList();
     }
 
 }
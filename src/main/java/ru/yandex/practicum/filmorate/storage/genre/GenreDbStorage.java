@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -7,7 +9,8 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
-import ru.yandex.practicum.filmorate.storage.film.GenreOfFilm;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.ReferenceCache;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,39 +21,52 @@ import java.util.Set;
 
 @Repository
 public class GenreDbStorage extends BaseDbStorage<Genre> {
-    private final RowMapper<GenreOfFilm> genreOfFilmRowMapper;
-
-    public GenreDbStorage(NamedParameterJdbcTemplate jdbc,
-                          RowMapper<Genre> mapper,
-                          RowMapper<GenreOfFilm> genreOfFilmRowMapper) {
+    private static final String SELECT_GENRES_QUERY = "SELECT * from genres ORDER BY id";
+    // Названия жанров берутся из справочника, таблица genres не читается
+    private static final String SELECT_GENRES_OF_FILMS_QUERY = """
+            SELECT fg.film_id,
+                   fg.genre_id
+            FROM film_genres fg
+            WHERE fg.film_id IN (:ids)
+            """;
+
+    private final ReferenceCache<Genre> genresCache;
+    private final DataVersions dataVersions;
+
+    public GenreDbStorage(NamedParameterJdbcTemplate jdbc, RowMapper<Genre> mapper, DataVersions dataVersions) {
         super(jdbc, mapper);
-        this.genreOfFilmRowMapper = genreOfFilmRowMapper;
+        this.dataVersions = dataVersions;
+        this.genresCache = new ReferenceCache<>(
+                () -> jdbc.query(SELECT_GENRES_QUERY, mapper),
+                Genre::getId);
     }
 
     public List<Genre> getAll() {
-        return jdbc.query("SELECT * from genres", mapper);
+        return genresCache.getAll();
     }
 
     public Optional<Genre> getById(int id) {
-        String query = """
-                SELECT * from genres
-                WHERE id = :id
-                """;
-        return getOneById(query, id);
+        return genresCache.get(id);
     }
 
     public List<Genre> getGenresByIds(List<Integer> ids) {
-        if (ids.isEmpty())
-            return List.of();
+        return ids.stream()
+                .map(genresCache::get)
+                .flatMap(Optional::stream)
+                .toList();
+    }
 
-        String query = """
-                SELECT * from genres
-                WHERE id in (:ids)
-                """;
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("ids", ids);
+    // Справочник жанров читается из БД заново при следующем обращении
+    public void invalidate() {
+        genresCache.invalidate();
+        // Названия из справочника входят и в ответы /films
+        dataVersions.bump(DataVersions.Resource.GENRES);
+        dataVersions.bump(DataVersions.Resource.FILMS);
+    }
 
-        return jdbc.query(query, params, mapper);
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        genresCache.getAll();
     }
 
     public void joinGenresToFilms(List<Film> films) {
@@ -74,26 +90,15 @@ public class GenreDbStorage extends BaseDbStorage<Genre> {
         if (ids.isEmpty()) {
             return Map.of();
         }
-        String query = """
-                SELECT fg.film_id  AS film_id,
-                       fg.genre_id AS id,
-                       g.name      AS name
-                FROM film_genres fg
-                JOIN genres g ON g.id = fg.genre_id
-                WHERE fg.film_id IN (:ids)
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("ids", ids);
 
-        List<GenreOfFilm> genresOfFilms = jdbc.query(query, params, genreOfFilmRowMapper);
-
         Map<Integer, Set<Genre>> result = new HashMap<>();
-        for (GenreOfFilm gf : genresOfFilms) {
-            Integer filmId = gf.getFilmId();
-
-            result.computeIfAbsent(filmId,k -> new HashSet<>())
-                    .add(gf.getGenre());
-        }
+        jdbc.query(SELECT_GENRES_OF_FILMS_QUERY, params, rs -> {
+            int filmId = rs.getInt("film_id");
+            genresCache.get(rs.getInt("genre_id"))
+                    .ifPresent(genre -> result.computeIfAbsent(filmId, k -> new HashSet<>()).add(genre));
+        });
         return result;
     }
 
@@ -1,30 +1,52 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.ReferenceCache;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public class MpaDbStorage extends BaseDbStorage<MpaRating> {
-    public MpaDbStorage(NamedParameterJdbcTemplate jdbc, RowMapper<MpaRating> mapper) {
+    private static final String SELECT_MPA_QUERY = "SELECT * from mpa_ratings ORDER BY id";
+
+    private final ReferenceCache<MpaRating> mpaCache;
+    private final DataVersions dataVersions;
+
+    public MpaDbStorage(NamedParameterJdbcTemplate jdbc, RowMapper<MpaRating> mapper, DataVersions dataVersions) {
         super(jdbc, mapper);
+        this.dataVersions = dataVersions;
+        this.mpaCache = new ReferenceCache<>(
+                () -> jdbc.query(SELECT_MPA_QUERY, mapper),
+                MpaRating::getId);
     }
 
     public List<MpaRating> getAll() {
-        return jdbc.query("SELECT * from mpa_ratings", mapper);
+        return mpaCache.getAll();
     }
 
     public Optional<MpaRating> getById(int id) {
-        String query = """
-                SELECT * from mpa_ratings
-                WHERE id = :id
-                """;
-        return getOneById(query, id);
+        return mpaCache.get(id);
+    }
+
+    // Справочник рейтингов читается из БД заново при следующем обращении
+    public void invalidate() {
+        mpaCache.invalidate();
+        // Названия из справочника входят и в ответы /films
+        dataVersions.bump(DataVersions.Resource.MPA);
+        dataVersions.bump(DataVersions.Resource.FILMS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        mpaCache.getAll();
     }
 
 }
@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.CacheVersion;
+import ru.yandex.practicum.filmorate.storage.film.CachedFilmStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище filmorate.storage=cached-jdbc: UserDbStorage с кэшем чтения пользователей по id.
+ * Друзья и общие друзья уже считаются по графу дружбы в памяти UserDbStorage.
+ */
+@Component("cachedUserStorage")
+@Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "cached-jdbc")
+public class CachedUserStorage implements UserStorage {
+    private final UserStorage delegate;
+    private final CachedFilmStorage filmStorage;
+    private final Map<Integer, User> users = new ConcurrentHashMap<>();
+    private final CacheVersion version = new CacheVersion();
+
+    public CachedUserStorage(UserDbStorage delegate, CachedFilmStorage filmStorage) {
+        this.delegate = delegate;
+        this.filmStorage = filmStorage;
+    }
+
+    @Override
+    public List<User> getAll(int afterId, int limit) {
+        return delegate.getAll(afterId, limit);
+    }
+
+    @Override
+    public Optional<User> getById(int userId) {
+        User cached = users.get(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        return version.readThrough(() -> delegate.getById(userId),
+                found -> found.ifPresent(user -> users.put(userId, user)));
+    }
+
+    @Override
+    public List<User> getByIds(Collection<Integer> userIds) {
+        return delegate.getByIds(userIds);
+    }
+
+    @Override
+    public List<User> getByEmailsOrLogins(Collection<String> emails, Collection<String> logins) {
+        return delegate.getByEmailsOrLogins(emails, logins);
+    }
+
+    @Override
+    public boolean exists(int userId) {
+        return users.containsKey(userId) || delegate.exists(userId);
+    }
+
+    @Override
+    public int[] getAllIds() {
+        return delegate.getAllIds();
+    }
+
+    @Override
+    public User create(User user) {
+        return delegate.create(user);
+    }
+
+    @Override
+    public User update(User user) {
+        User updated = delegate.update(user);
+        version.bump(() -> users.remove(user.getId()));
+        return updated;
+    }
+
+    @Override
+    public List<User> createAll(List<User> usersToCreate) {
+        return delegate.createAll(usersToCreate);
+    }
+
+    @Override
+    public List<User> updateAll(List<User> usersToUpdate) {
+        List<User> updated = delegate.updateAll(usersToUpdate);
+        version.bump(() -> updated.forEach(user -> users.remove(user.getId())));
+        return updated;
+    }
+
+    @Override
+    public void delete(int userId) {
+        delegate.delete(userId);
+        version.bump(() -> users.remove(userId));
+        filmStorage.evictPopular();
+    }
+
+    @Override
+    public void addFriend(int userId, int friendId) {
+        delegate.addFriend(userId, friendId);
+    }
+
+    @Override
+    public void deleteFriend(int userId, int friendId) {
+        delegate.deleteFriend(userId, friendId);
+    }
+
+    @Override
+    public void addFriends(Collection<Friendship> friendships) {
+        delegate.addFriends(friendships);
+    }
+
+    @Override
+    public List<User> getFriends(int userId) {
+        return delegate.getFriends(userId);
+    }
+
+    @Override
+    public int[] getFriendIds(int userId) {
+        return delegate.getFriendIds(userId);
+    }
+
+    @Override
+    public void forEachFriendship(Consumer<Friendship> action) {
+        delegate.forEachFriendship(action);
+    }
+
+    @Override
+    public List<User> getCommonFriends(int userId, int otherId) {
+        return delegate.getCommonFriends(userId, otherId);
+    }
+}
@@ -0,0 +1,193 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.storage.IntAdjacency;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Граф дружбы из таблицы friends в памяти: для каждого пользователя отсортированные id друзей
+ * и обратный индекс (у кого он в друзьях) - чтобы удалять пользователя без обхода всего графа.
+ * Загружается целиком при первом обращении.
+ * Изменения применяются сразу после записи в БД; при откате транзакции граф сбрасывается
+ * и перечитывается из БД при следующем обращении. Одиночное добавление и удаление друга после фиксации
+ * перечитывают свою пару из БД под блокировкой пары: параллельные транзакции могут применить изменения
+ * к графу не в том порядке, в каком зафиксировали их в БД, а перечитанная пара совпадает с последней фиксацией.
+ * Рассчитан на одно приложение на базу: записи в friends мимо UserDbStorage граф не увидит.
+ * Блокировка - ReentrantLock, а не synchronized: загрузка ждёт БД и не должна занимать поток-носитель
+ * виртуального потока.
+ */
+class FriendGraph {
+    private static final String SELECT_FRIENDS_QUERY = "SELECT user_id, friend_id FROM friends";
+    private static final String FRIENDSHIP_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM friends WHERE user_id = :userId AND friend_id = :friendId)
+            """;
+    private static final int PAIR_LOCK_STRIPES = 64;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Перечитывания одной пары идут по очереди - последнее видит последнюю фиксацию
+    private final StripedLock pairLocks = new StripedLock(PAIR_LOCK_STRIPES);
+    private volatile Graph graph;
+
+    FriendGraph(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // Id друзей пользователя по возрастанию
+    int[] friendsOf(int userId) {
+        return graph().friends.get(userId);
+    }
+
+    void addFriend(int userId, int friendId) {
+        apply(current -> link(current, userId, friendId), () -> refreshPair(userId, friendId));
+    }
+
+    void addFriends(List<Friendship> friendships) {
+        if (friendships.isEmpty()) {
+            return;
+        }
+        apply(current -> friendships.forEach(friendship -> {
+            current.friends.add(friendship.getUserId(), friendship.getFriendId());
+            current.followers.add(friendship.getFriendId(), friendship.getUserId());
+        }));
+    }
+
+    void deleteFriend(int userId, int friendId) {
+        apply(current -> unlink(current, userId, friendId), () -> refreshPair(userId, friendId));
+    }
+
+    // Повторяет ON DELETE CASCADE таблицы friends
+    void deleteUser(int userId) {
+        apply(current -> {
+            for (int friendId : current.friends.get(userId)) {
+                current.followers.remove(friendId, userId);
+            }
+            for (int followerId : current.followers.get(userId)) {
+                current.friends.remove(followerId, userId);
+            }
+            current.friends.removeNode(userId);
+            current.followers.removeNode(userId);
+        });
+    }
+
+    void invalidate() {
+        lock.lock();
+        try {
+            graph = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void warmUp() {
+        graph();
+    }
+
+    private Graph graph() {
+        Graph result = graph;
+        if (result == null) {
+            lock.lock();
+            try {
+                result = graph;
+                if (result == null) {
+                    result = load();
+                    graph = result;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    private Graph load() {
+        Graph result = new Graph();
+        jdbc.getJdbcTemplate().query(SELECT_FRIENDS_QUERY, rs -> {
+            int userId = rs.getInt("user_id");
+            int friendId = rs.getInt("friend_id");
+            result.friends.add(userId, friendId);
+            result.followers.add(friendId, userId);
+        });
+        return result;
+    }
+
+    private void refreshPair(int userId, int friendId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("friendId", friendId);
+
+        pairLocks.runLocked(userId, () -> {
+            boolean exists = Boolean.TRUE.equals(jdbc.queryForObject(FRIENDSHIP_EXISTS_QUERY, params, Boolean.class));
+            applyIfLoaded(current -> {
+                if (exists) {
+                    link(current, userId, friendId);
+                } else {
+                    unlink(current, userId, friendId);
+                }
+            });
+        });
+    }
+
+    private static void link(Graph current, int userId, int friendId) {
+        current.friends.add(userId, friendId);
+        current.followers.add(friendId, userId);
+    }
+
+    private static void unlink(Graph current, int userId, int friendId) {
+        current.friends.remove(userId, friendId);
+        current.followers.remove(friendId, userId);
+    }
+
+    private void apply(Consumer<Graph> change) {
+        apply(change, null);
+    }
+
+    // Изменение видно сразу (в том числе своей транзакции); после фиксации выполняется onCommit,
+    // если он задан, иначе изменение доприменяется к графу, загруженному параллельно
+    private void apply(Consumer<Graph> change, Runnable onCommit) {
+        boolean applied = applyIfLoaded(change);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        invalidate();
+                    } else if (onCommit != null) {
+                        onCommit.run();
+                    } else if (!applied) {
+                        // Граф мог загрузиться параллельно и не увидеть ещё не зафиксированную запись
+                        applyIfLoaded(change);
+                    }
+                }
+            });
+        }
+    }
+
+    private boolean applyIfLoaded(Consumer<Graph> change) {
+        lock.lock();
+        try {
+            Graph current = graph;
+            if (current == null) {
+                return false;
+            }
+            change.accept(current);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Graph {
+        private final IntAdjacency friends = new IntAdjacency();
+        private final IntAdjacency followers = new IntAdjacency();
+    }
+}
@@ -1,25 +1,47 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.DbStorageException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IntAdjacency;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Component("inMemoryUserStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Integer, User> users = new HashMap<>();
-    private final Map<Integer, Set<Integer>> friends = new HashMap<>();
-    private int nextId = 0;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentNavigableMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    // Пользователь -> id его друзей; обратный индекс - для удаления пользователя
+    private final IntAdjacency friends = IntAdjacency.withReverseIndex();
+    private final AtomicInteger nextId = new AtomicInteger();
+    // Добавление в друзья и удаление пользователя затрагивают несколько ключей сразу
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
+    private final InMemoryFilmStorage filmStorage;
+
+    public InMemoryUserStorage(InMemoryFilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
 
     @Override
-    public List<User> getAll() {
-        return users.values().stream().toList();
+    public List<User> getAll(int afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .toList();
     }
 
     @Override
@@ -27,9 +49,37 @@ public class InMemoryUserStorage implements UserStorage {
         return Optional.ofNullable(users.get(userId));
     }
 
+    @Override
+    public List<User> getByIds(Collection<Integer> userIds) {
+        return toUsers(userIds.stream()
+                .mapToInt(Integer::intValue)
+                .distinct()
+                .sorted()
+                .toArray());
+    }
+
+    @Override
+    public boolean exists(int userId) {
+        return users.containsKey(userId);
+    }
+
+    @Override
+    public List<User> getByEmailsOrLogins(Collection<String> emails, Collection<String> logins) {
+        return users.values().stream()
+                .filter(user -> emails.contains(user.getEmail()) || logins.contains(user.getLogin()))
+                .toList();
+    }
+
+    @Override
+    public int[] getAllIds() {
+        return users.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
     @Override
     public User create(User newUser) {
-        int newId = getNextId();
+        int newId = nextId.incrementAndGet();
         newUser.setId(newId);
         users.put(newId, newUser);
         return newUser;
@@ -38,59 +88,90 @@ public class InMemoryUserStorage implements UserStorage {
     @Override
     public User update(User userToUpdate) {
         int id = userToUpdate.getId();
-        users.put(id, userToUpdate);
+        if (users.replace(id, userToUpdate) == null) {
+            throw new DbStorageException("Не удалось обновить данные");
+        }
         return userToUpdate;
     }
 
+    @Override
+    public List<User> createAll(List<User> usersToCreate) {
+        usersToCreate.forEach(this::create);
+        return usersToCreate;
+    }
+
+    @Override
+    public List<User> updateAll(List<User> usersToUpdate) {
+        List<User> updated = new ArrayList<>();
+        for (User user : usersToUpdate) {
+            if (users.replace(user.getId(), user) != null) {
+                updated.add(user);
+            }
+        }
+        return updated;
+    }
+
     @Override
     public void delete(int userId) {
-        users.remove(userId);
-        friends.remove(userId);
-        friends.values().forEach(friendsOfUser -> friendsOfUser.remove(userId));
+        locks.runLocked(userId, () -> {
+            users.remove(userId);
+            friends.removeNode(userId);
+            friends.removeTarget(userId);
+        });
+        filmStorage.userDeleted(userId);
     }
 
+    // Дружба односторонняя, как в таблице friends: userId добавляет friendId в свои друзья
     @Override
     public void addFriend(int userId, int friendId) {
-        friends.computeIfAbsent(userId, key -> new HashSet<>()).add(friendId);
-        friends.computeIfAbsent(friendId, key -> new HashSet<>()).add(userId);
+        locks.runLocked(userId, friendId, () -> {
+            if (users.containsKey(userId) && users.containsKey(friendId)) {
+                friends.add(userId, friendId);
+            }
+        });
     }
 
     @Override
     public void deleteFriend(int userId, int friendId) {
-        Set<Integer> friendsOfUser = friends.get(userId);
-        if (friendsOfUser != null) {
-            friendsOfUser.remove(friendId);
-        }
+        locks.runLocked(userId, friendId, () -> friends.remove(userId, friendId));
+    }
 
-        Set<Integer> friendsOfFriend = friends.get(friendId);
-        if (friendsOfFriend != null) {
-            friendsOfFriend.remove(userId);
-        }
+    @Override
+    public void addFriends(Collection<Friendship> friendships) {
+        // Дружба с самим собой пропускается, как CHECK таблицы friends
+        friendships.stream()
+                .filter(friendship -> friendship.getUserId() != friendship.getFriendId())
+                .forEach(friendship -> addFriend(friendship.getUserId(), friendship.getFriendId()));
     }
 
     @Override
     public List<User> getFriends(int userId) {
-        Set<Integer> friendsOfUser = friends.getOrDefault(userId, Set.of());
-        return friendsOfUser.stream()
-                .map(users::get)
-                .filter(Objects::nonNull)
-                .toList();
+        return toUsers(friends.get(userId));
+    }
+
+    @Override
+    public int[] getFriendIds(int userId) {
+        return friends.get(userId);
+    }
+
+    @Override
+    public void forEachFriendship(Consumer<Friendship> action) {
+        for (int userId : getAllIds()) {
+            for (int friendId : friends.get(userId)) {
+                action.accept(new Friendship(userId, friendId));
+            }
+        }
     }
 
     @Override
     public List<User> getCommonFriends(int userId, int otherId) {
-        Set<Integer> friendsId1 = friends.getOrDefault(userId, Set.of());
-        Set<Integer> friendsId2 = friends.getOrDefault(otherId, Set.of());
+        return toUsers(IntAdjacency.intersect(friends.get(userId), friends.get(otherId)));
+    }
 
-        return friendsId1.stream()
-                .filter(friendsId2::contains)
-                .map(users::get)
+    private List<User> toUsers(int[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(users::get)
                 .filter(Objects::nonNull)
                 .toList();
     }
-
-    private int getNextId() {
-        nextId++;
-        return nextId;
-    }
 }
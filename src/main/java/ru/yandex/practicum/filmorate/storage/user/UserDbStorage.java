@@ -1,54 +1,192 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
-import org.springframework.dao.DuplicateKeyException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DbStorageException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.BaseDbStorage;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.IntAdjacency;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository("userDbStorage")
+@ConditionalOnExpression("'${filmorate.storage:jdbc}' != 'memory'")
 public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
+    private static final String INSERT_USER_QUERY = """
+            INSERT INTO users(email, login, name, birthday)
+            VALUES (:email, :login, :name, :birthday)
+            """;
+    private static final String UPDATE_USER_QUERY = """
+            UPDATE users SET
+            email = :email,
+            login = :login,
+            name  = :name,
+            birthday = :birthday
+            WHERE id = :userId
+            """;
 
-    public UserDbStorage(NamedParameterJdbcTemplate jdbc, RowMapper<User> mapper) {
+    private static final String SELECT_USERS_PAGE_QUERY = """
+            SELECT * FROM users
+            WHERE id > :afterId
+            ORDER BY id
+            LIMIT :limit;
+            """;
+
+    private static final String SELECT_USER_BY_ID_QUERY = """
+            SELECT * FROM users
+            WHERE id = :id
+            """;
+
+    private static final String SELECT_USERS_BY_IDS_QUERY = """
+            SELECT * FROM users
+            WHERE id IN (:ids)
+            ORDER BY id
+            """;
+
+    // UNION, а не OR: каждая половина идёт по своему уникальному индексу
+    private static final String SELECT_USERS_BY_EMAILS_OR_LOGINS_QUERY = """
+            SELECT * FROM users WHERE email IN (:emails)
+            UNION
+            SELECT * FROM users WHERE login IN (:logins)
+            """;
+
+    private static final String SELECT_USER_IDS_QUERY = "SELECT id FROM users ORDER BY id";
+
+    private static final String USER_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM users WHERE id = :id)
+            """;
+
+    // Лайки пользователя удалятся каскадно - счётчики фильмов уменьшаются заранее
+    private static final String DECREMENT_LIKES_OF_USER_QUERY = """
+            UPDATE films
+            SET likes_count = likes_count - 1
+            WHERE id IN (SELECT film_id FROM likes WHERE user_id = :userId)
+            """;
+
+    private static final String DECREMENT_GENRE_LIKES_OF_USER_QUERY = """
+            UPDATE film_genres
+            SET likes_count = likes_count - 1
+            WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = :userId)
+            """;
+
+    private static final String DELETE_USER_QUERY = """
+            DELETE FROM users
+            WHERE id = :userId;
+            """;
+
+    private static final String DELETE_FRIEND_QUERY = """
+            DELETE FROM friends
+            WHERE user_id = :userId
+            AND friend_id = :friendId;
+            """;
+
+    // Как MERGE лайков в FilmDbStorage: источник соединён с users, без WHEN MATCHED счётчик строк показывает новую дружбу
+    private static final String MERGE_FRIEND_QUERY = """
+            MERGE INTO friends f
+            USING (SELECT u.id AS user_id, fr.id AS friend_id
+                   FROM users u, users fr
+                   WHERE u.id = :userId AND fr.id = :friendId AND u.id <> fr.id) s
+            ON f.user_id = s.user_id AND f.friend_id = s.friend_id
+            WHEN NOT MATCHED THEN INSERT (user_id, friend_id) VALUES (s.user_id, s.friend_id)
+            """;
+
+    private static final String SELECT_FRIENDS_QUERY = """
+            SELECT users.* from friends
+            JOIN users ON users.id = friends.friend_id
+            WHERE friends.user_id = :userId;
+            """;
+
+    private static final String EXPORT_FRIENDS_QUERY = """
+            SELECT user_id, friend_id
+            FROM friends
+            ORDER BY user_id, friend_id
+            """;
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private final FriendGraph friendGraph;
+    private final DataVersions dataVersions;
+
+    public UserDbStorage(NamedParameterJdbcTemplate jdbc, RowMapper<User> mapper, DataVersions dataVersions) {
         super(jdbc, mapper);
+        this.friendGraph = new FriendGraph(jdbc);
+        this.dataVersions = dataVersions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        friendGraph.warmUp();
     }
 
     @Override
-    public List<User> getAll() {
-        String getAllQuery = "SELECT * FROM users;";
-        return jdbc.query(getAllQuery, mapper);
+    public List<User> getAll(int afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+
+        return jdbc.query(SELECT_USERS_PAGE_QUERY, params, mapper);
     }
 
     @Override
     public Optional<User> getById(int userId) {
-        String getByIdQuery = """
-                SELECT * FROM users
-                WHERE id = :id
-                """;
+        return getOneById(SELECT_USER_BY_ID_QUERY, userId);
+    }
 
-        return getOneById(getByIdQuery, userId);
+    @Override
+    public List<User> getByIds(Collection<Integer> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", userIds);
+
+        return jdbc.query(SELECT_USERS_BY_IDS_QUERY, params, mapper);
     }
 
     @Override
-    public User create(User user) {
-        String createQuery = """
-                INSERT INTO users(email, login, name, birthday)
-                VALUES (:email, :login, :name, :birthday);
-                """;
+    public boolean exists(int userId) {
+        return existsById(USER_EXISTS_QUERY, userId);
+    }
+
+    @Override
+    public List<User> getByEmailsOrLogins(Collection<String> emails, Collection<String> logins) {
+        if (emails.isEmpty() && logins.isEmpty()) {
+            return List.of();
+        }
 
+        // Пустой IN недопустим - вместо пустого набора подставляется значение, которого нет в таблице
         MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("email", user.getEmail())
-                .addValue("login", user.getLogin())
-                .addValue("name", user.getName())
-                .addValue("birthday", normaliseDateForSql(user.getBirthday()));
+                .addValue("emails", emails.isEmpty() ? List.of("") : emails)
+                .addValue("logins", logins.isEmpty() ? List.of("") : logins);
+
+        return jdbc.query(SELECT_USERS_BY_EMAILS_OR_LOGINS_QUERY, params, mapper);
+    }
 
-        int createdUserId = insertWithKeyReturning(createQuery, params);
+    @Override
+    public int[] getAllIds() {
+        return selectIds(SELECT_USER_IDS_QUERY);
+    }
+
+    @Override
+    public User create(User user) {
+        int createdUserId = insertWithKeyReturning(INSERT_USER_QUERY, userParams(user));
         user.setId(createdUserId);
 
         return user;
@@ -57,100 +195,144 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
     @Override
     public User update(User user) {
         Integer userId = user.getId();
-        String updateQuery = """
-                UPDATE users SET
-                email = :email,
-                login = :login,
-                name  = :name,
-                birthday = :birthday
-                WHERE id = :userId;
-                """;
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("email", user.getEmail())
-                .addValue("login", user.getLogin())
-                .addValue("name", user.getName())
-                .addValue("birthday", normaliseDateForSql(user.getBirthday()))
-                .addValue("userId", userId);
-
-        updateWithCheckResult(updateQuery, params);
+        updateWithCheckResult(UPDATE_USER_QUERY, userParams(user).addValue("userId", userId));
 
         return getById(userId)
                 .orElseThrow(() -> new DbStorageException("После обновления не найден пользователь с id:" + userId));
     }
 
     @Override
+    @Transactional
+    public List<User> createAll(List<User> usersToCreate) {
+        if (usersToCreate.isEmpty()) {
+            return usersToCreate;
+        }
+        SqlParameterSource[] batchParams = usersToCreate.stream()
+                .map(this::userParams)
+                .toArray(SqlParameterSource[]::new);
+
+        int[] ids = batchInsertWithKeysReturning(INSERT_USER_QUERY, batchParams);
+        for (int i = 0; i < ids.length; i++) {
+            usersToCreate.get(i).setId(ids[i]);
+        }
+        return usersToCreate;
+    }
+
+    @Override
+    @Transactional
+    public List<User> updateAll(List<User> usersToUpdate) {
+        if (usersToUpdate.isEmpty()) {
+            return List.of();
+        }
+        SqlParameterSource[] batchParams = usersToUpdate.stream()
+                .map(user -> userParams(user).addValue("userId", user.getId()))
+                .toArray(SqlParameterSource[]::new);
+
+        int[] rowsUpdated = jdbc.batchUpdate(UPDATE_USER_QUERY, batchParams);
+        List<User> updated = new ArrayList<>();
+        for (int i = 0; i < rowsUpdated.length; i++) {
+            if (rowsUpdated[i] > 0) {
+                updated.add(usersToUpdate.get(i));
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
     public void delete(int userId) {
-        String deleteByIdQuery = """
-                DELETE FROM users
-                WHERE id = :userId;
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("userId", userId);
 
-        jdbc.update(deleteByIdQuery, params);
+        jdbc.update(DECREMENT_LIKES_OF_USER_QUERY, params);
+        jdbc.update(DECREMENT_GENRE_LIKES_OF_USER_QUERY, params);
+        jdbc.update(DELETE_USER_QUERY, params);
+        friendGraph.deleteUser(userId);
+        // Вместе с пользователем пропали его лайки - меняются популярные фильмы
+        dataVersions.bump(DataVersions.Resource.FILMS);
     }
 
+    // MERGE вместо INSERT с перехватом DuplicateKeyException: ошибка оператора не должна ломать транзакцию
     @Override
+    @Transactional
     public void addFriend(int userId, int friendId) {
-        String addFriendQuery = """
-                INSERT INTO friends(user_id, friend_id)
-                VALUES (:userId, :friendId);
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("userId", userId)
                 .addValue("friendId", friendId);
 
-        try {
-            jdbc.update(addFriendQuery, params);
-        } catch (DuplicateKeyException ex) {
-            // Уже добавлен в друзья - ничего не делать
+        if (jdbc.update(MERGE_FRIEND_QUERY, params) > 0) {
+            friendGraph.addFriend(userId, friendId);
         }
     }
 
     @Override
+    @Transactional
     public void deleteFriend(int userId, int friendId) {
-        String deleteFromFriendsQuery = """
-                DELETE FROM friends
-                WHERE user_id = :userId
-                AND friend_id = :friendId;
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("userId", userId)
                 .addValue("friendId", friendId);
 
-        jdbc.update(deleteFromFriendsQuery, params);
+        if (jdbc.update(DELETE_FRIEND_QUERY, params) > 0) {
+            friendGraph.deleteFriend(userId, friendId);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void addFriends(Collection<Friendship> friendships) {
+        SqlParameterSource[] batchParams = friendships.stream()
+                .map(friendship -> new MapSqlParameterSource()
+                        .addValue("userId", friendship.getUserId())
+                        .addValue("friendId", friendship.getFriendId()))
+                .toArray(SqlParameterSource[]::new);
+
+        int[] rowsInserted = jdbc.batchUpdate(MERGE_FRIEND_QUERY, batchParams);
+        List<Friendship> added = new ArrayList<>();
+        int i = 0;
+        for (Friendship friendship : friendships) {
+            if (rowsInserted[i++] > 0) {
+                added.add(friendship);
+            }
+        }
+        friendGraph.addFriends(added);
     }
 
     @Override
     public List<User> getFriends(int userId) {
-        String getFriendsQuery = """
-                SELECT users.* from friends
-                JOIN users ON users.id = friends.friend_id
-                WHERE friends.user_id = :userId;
-                """;
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("userId", userId);
 
-        return jdbc.query(getFriendsQuery, params, mapper);
+        return jdbc.query(SELECT_FRIENDS_QUERY, params, mapper);
     }
 
+    @Override
+    public int[] getFriendIds(int userId) {
+        return friendGraph.friendsOf(userId);
+    }
+
+    @Override
+    public void forEachFriendship(Consumer<Friendship> action) {
+        jdbc.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_FRIENDS_QUERY);
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> action.accept(new Friendship(rs.getInt("user_id"), rs.getInt("friend_id"))));
+    }
+
+    // Пересечение считается по графу дружбы в памяти, из БД одним запросом читаются только найденные пользователи
     @Override
     public List<User> getCommonFriends(int userId, int otherId) {
-        String commonFriendsQuery = """
-                SELECT users.* from users
-                JOIN (
-                SELECT f1.friend_id FROM friends f1
-                JOIN friends f2 ON f1.friend_id = f2.friend_id
-                WHERE f1.user_id = :userId AND f2.user_id = :otherId
-                ) common_friends
-                ON users.id = common_friends.friend_id
-                ;
-                """;
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("userId", userId)
-                .addValue("otherId", otherId);
+        int[] commonIds = IntAdjacency.intersect(friendGraph.friendsOf(userId), friendGraph.friendsOf(otherId));
+
+        return getByIds(Arrays.stream(commonIds).boxed().toList());
+    }
 
-        return jdbc.query(commonFriendsQuery, params, mapper);
+    private MapSqlParameterSource userParams(User user) {
+        return new MapSqlParameterSource()
+                .addValue("email", user.getEmail())
+                .addValue("login", user.getLogin())
+                .addValue("name", user.getName())
+                .addValue("birthday", normaliseDateForSql(user.getBirthday()));
     }
 
 }
@@ -1,27 +1,56 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
-    List<User> getAll();
+    // Страница пользователей с id > afterId в порядке возрастания id
+    List<User> getAll(int afterId, int limit);
 
     Optional<User> getById(int userId);
 
+    // Пользователи с указанными id в порядке возрастания id, несуществующие id пропускаются
+    List<User> getByIds(Collection<Integer> userIds);
+
+    boolean exists(int userId);
+
+    // Пользователи, у которых email или логин совпадает с одним из указанных
+    List<User> getByEmailsOrLogins(Collection<String> emails, Collection<String> logins);
+
+    // Id всех пользователей по возрастанию
+    int[] getAllIds();
+
     User create(User user);
 
     User update(User user);
 
+    // Пакетные версии create/update, как в FilmStorage
+    List<User> createAll(List<User> users);
+
+    List<User> updateAll(List<User> users);
+
     void delete(int userId);
 
     void addFriend(int userId, int friendId);
 
     void deleteFriend(int userId, int friendId);
 
+    // Пакетная версия addFriend; уже существующая дружба и несуществующие пользователи пропускаются
+    void addFriends(Collection<Friendship> friendships);
+
     List<User> getFriends(int userId);
 
+    // Id друзей пользователя по возрастанию
+    int[] getFriendIds(int userId);
+
+    // Обход всей дружбы в порядке userId, затем friendId, без загрузки таблицы в память
+    void forEachFriendship(Consumer<Friendship> action);
+
     List<User> getCommonFriends(int userId, int otherId);
 }
@@ -15,6 +15,11 @@ CREATE TABLE IF NOT EXISTS friends (
     CHECK (user_id <> friend_id)
 );
 
+-- Обратные индексы ниже составные: вторая колонка делает их покрывающими,
+-- и поиск по ним не читает строки таблицы.
+-- У кого пользователь в друзьях (удаление пользователя, обратная сторона дружбы)
+CREATE INDEX IF NOT EXISTS friends_friend_id_idx ON friends(friend_id, user_id);
+
 CREATE TABLE IF NOT EXISTS mpa_ratings (
   id INT PRIMARY KEY,
   name varchar(40) NOT NULL,
@@ -33,21 +38,52 @@ CREATE TABLE IF NOT EXISTS films (
     release_date date NOT NULL,
     duration int NOT NULL,
     mpa_rating_id int,
+    likes_count int NOT NULL DEFAULT 0,
+    release_year int,
     FOREIGN KEY (mpa_rating_id) REFERENCES mpa_ratings(id)
 );
 
+-- Для баз, созданных до появления счётчика лайков
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count int NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films(likes_count DESC, id);
+
+-- Год выпуска хранится отдельно от даты, чтобы по нему был индекс для топа за год
+ALTER TABLE films ADD COLUMN IF NOT EXISTS release_year int;
+
+-- Топ рейтинга и топ года: фильтр, затем тот же порядок, что у общего топа
+CREATE INDEX IF NOT EXISTS films_mpa_popular_idx ON films(mpa_rating_id, likes_count DESC, id);
+CREATE INDEX IF NOT EXISTS films_year_popular_idx ON films(release_year, likes_count DESC, id);
+
+-- Для баз, созданных до появления release_year
+UPDATE films SET release_year = EXTRACT(YEAR FROM release_date) WHERE release_year IS NULL;
+
 CREATE TABLE IF NOT EXISTS film_genres (
   film_id int,
   genre_id int,
+  -- Копия films.likes_count: топ жанра идёт по индексу film_genres и не сортирует соединение с films
+  likes_count int NOT NULL DEFAULT 0,
   PRIMARY KEY (film_id, genre_id),
   FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
   FOREIGN KEY (genre_id) REFERENCES genres(id) ON DELETE CASCADE
 );
 
+-- Фильмы жанра
+CREATE INDEX IF NOT EXISTS film_genres_genre_id_idx ON film_genres(genre_id, film_id);
+
+-- Для баз, созданных до появления копии счётчика; значения выравнивает пересчёт при старте
+ALTER TABLE film_genres ADD COLUMN IF NOT EXISTS likes_count int NOT NULL DEFAULT 0;
+
+-- Топ жанра
+CREATE INDEX IF NOT EXISTS film_genres_popular_idx ON film_genres(genre_id, likes_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS likes (
   film_id int,
   user_id int,
   PRIMARY KEY (film_id, user_id),
   FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
   FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- Лайки пользователя (удаление пользователя, рекомендации)
+CREATE INDEX IF NOT EXISTS likes_user_id_idx ON likes(user_id, film_id);
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DbConcurrencyLimitFilterTest {
+    private final DataVersions dataVersions = new DataVersions();
+    private final DbConcurrencyLimitFilter filter =
+            new DbConcurrencyLimitFilter(null, dataVersions, new ObjectMapper(), 1, 50);
+    private final CountDownLatch inside = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void request_over_limit_gets_503_and_permit_is_returned() throws Exception {
+        Thread first = holdOnlyPermit();
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users/1/friends"), rejected,
+                (request, response) -> {
+                    throw new AssertionError("Запрос сверх лимита не должен дойти до контроллера");
+                });
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(rejected.getContentAsString()).contains("error");
+
+        release.countDown();
+        first.join(5_000);
+        assertThat(filter.available()).isEqualTo(1);
+
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users/1/friends"), accepted,
+                (request, response) -> ((MockHttpServletResponse) response).setStatus(HttpStatus.OK.value()));
+        assertThat(accepted.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(filter.available()).isEqualTo(1);
+    }
+
+    @Test
+    void requests_served_without_db_are_not_throttled() throws Exception {
+        Thread first = holdOnlyPermit();
+
+        assertThat(passes(new MockHttpServletRequest("GET", "/actuator/health"))).isTrue();
+        assertThat(passes(new MockHttpServletRequest("GET", "/actuator/prometheus"))).isTrue();
+        assertThat(passes(new MockHttpServletRequest("GET", "/genres"))).isTrue();
+        assertThat(passes(new MockHttpServletRequest("GET", "/mpa/1"))).isTrue();
+        assertThat(passes(new MockHttpServletRequest("GET", "/films/popular"))).isTrue();
+
+        MockHttpServletRequest revalidation = new MockHttpServletRequest("GET", "/films/1");
+        revalidation.addHeader(HttpHeaders.IF_NONE_MATCH, dataVersions.etag(DataVersions.Resource.FILMS));
+        assertThat(passes(revalidation)).isTrue();
+
+        // Фильтрованный топ и ETag старой версии идут в БД и ждут разрешения
+        MockHttpServletRequest filtered = new MockHttpServletRequest("GET", "/films/popular");
+        filtered.setParameter("genreId", "1");
+        assertThat(passes(filtered)).isFalse();
+        MockHttpServletRequest stale = new MockHttpServletRequest("GET", "/films/1");
+        stale.addHeader(HttpHeaders.IF_NONE_MATCH, dataVersions.etag(DataVersions.Resource.FILMS));
+        dataVersions.bump(DataVersions.Resource.FILMS);
+        assertThat(passes(stale)).isFalse();
+
+        release.countDown();
+        first.join(5_000);
+        assertThat(filter.available()).isEqualTo(1);
+    }
+
+    // Первый запрос занимает единственное разрешение, пока его не отпустят
+    private Thread holdOnlyPermit() throws InterruptedException {
+        Thread first = new Thread(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/users/1"), new MockHttpServletResponse(),
+                        (request, response) -> {
+                            inside.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        first.start();
+        assertThat(inside.await(5, TimeUnit.SECONDS)).isTrue();
+        return first;
+    }
+
+    private boolean passes(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response,
+                (req, res) -> ((MockHttpServletResponse) res).setStatus(HttpStatus.OK.value()));
+        return response.getStatus() == HttpStatus.OK.value();
+    }
+}
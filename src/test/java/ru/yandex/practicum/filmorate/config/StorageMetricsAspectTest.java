@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import ru.yandex.practicum.filmorate.exception.DbStorageException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StorageMetricsAspectTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void storage_calls_are_timed_and_result_rows_recorded() {
+        UserStorage users = proxy(new InMemoryUserStorage(new InMemoryFilmStorage(new DataVersions())));
+        User user = users.create(user("metrics"));
+
+        users.getById(user.getId());
+        users.getById(999_999);
+        users.getByIds(List.of(user.getId()));
+
+        Timer getById = registry.get(StorageMetricsAspect.CALLS)
+                .tags("storage", "InMemoryUserStorage", "method", "getById", "backend", "memory", "exception", "none")
+                .timer();
+        assertThat(getById.count()).isEqualTo(2);
+
+        DistributionSummary rows = registry.get(StorageMetricsAspect.ROWS)
+                .tags("method", "getById")
+                .summary();
+        assertThat(rows.count()).isEqualTo(2);
+        assertThat(rows.totalAmount()).isEqualTo(1);
+
+        // Результат create - сущность, а не набор строк
+        assertThat(registry.find(StorageMetricsAspect.ROWS).tags("method", "create").summary()).isNull();
+        assertThat(registry.get(StorageMetricsAspect.CALLS).tags("method", "create").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failed_calls_are_tagged_with_exception() {
+        UserStorage users = proxy(new InMemoryUserStorage(new InMemoryFilmStorage(new DataVersions())));
+        User missing = user("missing");
+        missing.setId(999_999);
+
+        assertThatThrownBy(() -> users.update(missing)).isInstanceOf(DbStorageException.class);
+
+        assertThat(registry.get(StorageMetricsAspect.CALLS)
+                .tags("method", "update", "exception", "DbStorageException")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    private UserStorage proxy(UserStorage target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(new StorageMetricsAspect(registry));
+        return factory.getProxy();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@t.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
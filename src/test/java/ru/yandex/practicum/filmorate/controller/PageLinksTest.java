@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageLinksTest {
+
+    @BeforeEach
+    void bindRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films");
+        request.setQueryString("afterId=0&limit=2");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void unbindRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void full_page_links_to_next_page_after_last_id() {
+        ResponseEntity<List<Integer>> page = PageLinks.page(List.of(3, 7), 2, Function.identity());
+
+        assertThat(page.getBody()).containsExactly(3, 7);
+        assertThat(page.getHeaders().getFirst(HttpHeaders.LINK))
+                .isEqualTo("<http://localhost/films?afterId=7&limit=2>; rel=\"next\"");
+    }
+
+    @Test
+    void short_page_is_last_and_has_no_link() {
+        ResponseEntity<List<Integer>> page = PageLinks.page(List.of(9), 2, Function.identity());
+
+        assertThat(page.getBody()).containsExactly(9);
+        assertThat(page.getHeaders().containsKey(HttpHeaders.LINK)).isFalse();
+    }
+}
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoOccurrenceIndexTest {
+
+    private InMemoryFilmStorage filmStorage;
+    private int f1;
+    private int f2;
+    private int f3;
+    private int f4;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage(new DataVersions());
+        f1 = filmStorage.create(film("Первый")).getId();
+        f2 = filmStorage.create(film("Второй")).getId();
+        f3 = filmStorage.create(film("Третий")).getId();
+        f4 = filmStorage.create(film("Четвёртый")).getId();
+    }
+
+    @Test
+    void build_orders_neighbours_by_common_users_then_id() {
+        // f1 с f3 лайкнули двое, с f2 и f4 - по одному
+        like(f1, 1);
+        like(f2, 1);
+        like(f3, 1);
+        like(f1, 2);
+        like(f3, 2);
+        like(f1, 3);
+        like(f4, 3);
+        CoOccurrenceIndex index = new CoOccurrenceIndex(filmStorage, 10);
+
+        index.build();
+
+        assertThat(index.similar(f1, 10)).containsExactly(f3, f2, f4);
+        assertThat(index.similar(f1, 1)).containsExactly(f3);
+        assertThat(index.similar(f2, 10)).containsExactly(f1, f3);
+        assertThat(index.similar(f4, 10)).containsExactly(f1);
+    }
+
+    @Test
+    void incremental_updates_match_rebuild() {
+        like(f1, 1);
+        like(f2, 1);
+        CoOccurrenceIndex index = new CoOccurrenceIndex(filmStorage, 10);
+        index.build();
+
+        likeIndexed(index, f1, 2);
+        likeIndexed(index, f3, 2);
+        likeIndexed(index, f3, 1);
+        // Повтор лайка не меняет веса
+        likeIndexed(index, f3, 1);
+        assertThat(index.similar(f1, 10)).containsExactly(f3, f2);
+
+        filmStorage.deleteLike(f1, 2);
+        index.unliked(List.of(new Like(f1, 2)));
+        assertThat(index.similar(f1, 10)).containsExactly(f2, f3);
+
+        CoOccurrenceIndex rebuilt = new CoOccurrenceIndex(filmStorage, 10);
+        rebuilt.build();
+        for (int filmId : new int[]{f1, f2, f3, f4}) {
+            assertThat(index.similar(filmId, 10)).containsExactly(rebuilt.similar(filmId, 10));
+        }
+    }
+
+    @Test
+    void full_list_keeps_heavy_pairs_and_lets_in_only_pairs_ranked_before_the_tail() {
+        like(f1, 1);
+        like(f2, 1);
+        like(f1, 2);
+        like(f2, 2);
+        like(f4, 2);
+        CoOccurrenceIndex index = new CoOccurrenceIndex(filmStorage, 2);
+        index.build();
+        assertThat(index.similar(f1, 10)).containsExactly(f2, f4);
+
+        // f3 с весом 1 стоит раньше f4 с весом 1 (меньше id) и вытесняет его, f2 с весом 2 остаётся
+        likeIndexed(index, f1, 3);
+        likeIndexed(index, f3, 3);
+        assertThat(index.similar(f1, 10)).containsExactly(f2, f3);
+
+        // f4 с весом 1 стоит позже f3 - пара отбрасывается
+        likeIndexed(index, f4, 3);
+        assertThat(index.similar(f1, 10)).containsExactly(f2, f3);
+
+        likeIndexed(index, f3, 1);
+        likeIndexed(index, f4, 1);
+        // Обе пары в списке уже с весом 2 - пара с f4 снова отбрасывается
+        assertThat(index.similar(f1, 10)).containsExactly(f2, f3);
+    }
+
+    @Test
+    void full_list_does_not_depend_on_order_of_equal_weight_pairs() {
+        CoOccurrenceIndex ascending = new CoOccurrenceIndex(filmStorage, 2);
+        CoOccurrenceIndex descending = new CoOccurrenceIndex(filmStorage, 2);
+        ascending.build();
+        descending.build();
+
+        // Пользователь 1 лайкает f1, затем остальные по возрастанию id, пользователь 2 - по убыванию
+        for (int filmId : new int[]{f1, f2, f3, f4}) {
+            ascending.liked(List.of(new Like(filmId, 1)));
+        }
+        for (int filmId : new int[]{f1, f4, f3, f2}) {
+            descending.liked(List.of(new Like(filmId, 2)));
+        }
+
+        assertThat(ascending.similar(f1, 10)).containsExactly(f2, f3);
+        assertThat(descending.similar(f1, 10)).containsExactly(f2, f3);
+        for (int filmId : new int[]{f1, f2, f3, f4}) {
+            assertThat(descending.similar(filmId, 10))
+                    .hasSizeLessThanOrEqualTo(2)
+                    .containsExactly(ascending.similar(filmId, 10));
+        }
+    }
+
+    @Test
+    void deleted_film_and_user_leave_index() {
+        like(f1, 1);
+        like(f2, 1);
+        like(f3, 1);
+        like(f1, 2);
+        like(f3, 2);
+        CoOccurrenceIndex index = new CoOccurrenceIndex(filmStorage, 10);
+        index.build();
+
+        index.filmDeleted(f3);
+        assertThat(index.similar(f1, 10)).containsExactly(f2);
+        assertThat(index.similar(f3, 10)).isEmpty();
+
+        index.userDeleted(1);
+        assertThat(index.similar(f1, 10)).isEmpty();
+        assertThat(index.similar(f2, 10)).isEmpty();
+    }
+
+    @Test
+    void changes_before_build_are_applied_after_it() {
+        CoOccurrenceIndex index = new CoOccurrenceIndex(filmStorage, 10);
+        like(f1, 1);
+        likeIndexed(index, f2, 1);
+        assertThat(index.similar(f1, 10)).isEmpty();
+
+        index.build();
+
+        assertThat(index.similar(f1, 10)).containsExactly(f2);
+        assertThat(index.similar(f2, 10)).containsExactly(f1);
+    }
+
+    private void like(int filmId, int userId) {
+        filmStorage.addLike(filmId, userId);
+    }
+
+    private void likeIndexed(CoOccurrenceIndex index, int filmId, int userId) {
+        filmStorage.addLike(filmId, userId);
+        index.liked(List.of(new Like(filmId, userId)));
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+
+    private InMemoryFilmStorage filmStorage;
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage(new DataVersions());
+        index = new FilmSearchIndex(filmStorage);
+    }
+
+    @Test
+    void tokens_are_lowercased_without_yo_and_russian_endings() {
+        assertThat(FilmSearchIndex.tokens("Ёжик в тумане, 1975-й год!"))
+                .containsExactly("ежик", "туман", "1975", "год");
+        assertThat(FilmSearchIndex.tokens("ФИЛЬМЫ о фильмах"))
+                .containsExactly("фильм", "фильм");
+        assertThat(FilmSearchIndex.tokens("Терминатор 2: Judgment Day"))
+                .containsExactly("терминатор", "2", "judgment", "day");
+    }
+
+    @Test
+    void name_match_ranks_above_description_match() {
+        int inDescription = create("Путешествие", "Долгая дорога к звёздам");
+        int inName = create("Звёзды", "Про космос");
+        int unrelated = create("Комедия", "Смешной фильм");
+        index.build();
+
+        assertThat(index.search("звезды", 10)).containsExactly(inName, inDescription);
+        assertThat(index.search("ЗВЁЗДНЫЙ комедия", 10)).containsExactly(unrelated);
+        assertThat(index.search("звёзд", 1)).containsExactly(inName);
+        assertThat(index.search("!!!", 10)).isEmpty();
+    }
+
+    @Test
+    void film_matching_more_terms_ranks_higher_and_ties_go_by_id() {
+        int first = create("Война", "Фильм о войне");
+        int second = create("Мир", "Фильм о мире");
+        int both = create("Война и мир", "Экранизация романа");
+        index.build();
+
+        assertThat(index.search("война мир", 10)).startsWith(both);
+        assertThat(index.search("фильм", 10)).containsExactly(first, second);
+    }
+
+    @Test
+    void create_update_and_delete_are_applied() {
+        int film = create("Старое название", "");
+        index.build();
+
+        int added = create("Новый фильм", "");
+        index.indexed(List.of(filmStorage.getById(added).orElseThrow()));
+        assertThat(index.search("новый", 10)).containsExactly(added);
+
+        Film changed = filmStorage.getById(film).orElseThrow();
+        changed.setName("Новое название");
+        filmStorage.update(changed);
+        index.indexed(List.of(changed));
+        assertThat(index.search("старое", 10)).isEmpty();
+        assertThat(index.search("название", 10)).containsExactly(film);
+
+        filmStorage.delete(added);
+        index.filmDeleted(added);
+        // "Новое" и "новый" - одно слово без окончания
+        assertThat(index.search("новый фильм", 10)).containsExactly(film);
+    }
+
+    @Test
+    void changes_before_build_are_applied_after_it() {
+        int film = create("Дюна", "");
+        index.indexed(List.of(filmStorage.getById(film).orElseThrow()));
+        index.filmDeleted(film);
+        assertThat(index.search("дюна", 10)).isEmpty();
+
+        int other = create("Дюна 2", "");
+        index.build();
+
+        // Построение видит оба фильма, отложенное удаление убирает первый
+        assertThat(index.search("дюна", 10)).containsExactly(other);
+    }
+
+    private int create(String name, String description) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription(description);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return filmStorage.create(film).getId();
+    }
+}
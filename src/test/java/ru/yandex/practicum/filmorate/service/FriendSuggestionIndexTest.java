@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FriendSuggestionIndexTest {
+
+    private boolean exportFails;
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(new InMemoryFilmStorage(new DataVersions())) {
+        @Override
+        public void forEachFriendship(Consumer<Friendship> action) {
+            if (exportFails) {
+                throw new IllegalStateException("БД недоступна");
+            }
+            super.forEachFriendship(action);
+        }
+    };
+    private final List<Runnable> rebuildTasks = new ArrayList<>();
+    private int me;
+    private int friend1;
+    private int friend2;
+    private int a;
+    private int b;
+    private int c;
+
+    @BeforeEach
+    void setUp() {
+        me = create("me");
+        friend1 = create("friend1");
+        friend2 = create("friend2");
+        a = create("a");
+        b = create("b");
+        c = create("c");
+        userStorage.addFriend(me, friend1);
+        userStorage.addFriend(me, friend2);
+        userStorage.addFriend(friend1, a);
+        userStorage.addFriend(friend1, b);
+        userStorage.addFriend(friend2, b);
+        userStorage.addFriend(friend2, me);
+        userStorage.addFriend(friend2, friend1);
+    }
+
+    @Test
+    void two_hop_users_are_ranked_by_mutual_friends_excluding_self_and_friends() {
+        FriendSuggestionIndex index = index(10_000);
+        index.rebuild();
+
+        assertThat(index.suggest(me, 10)).containsExactly(b, a);
+        assertThat(index.suggest(me, 1)).containsExactly(b);
+        assertThat(index.suggest(c, 10)).isEmpty();
+    }
+
+    @Test
+    void changes_after_snapshot_are_visible_before_rebuild() {
+        FriendSuggestionIndex index = index(10_000);
+        index.rebuild();
+
+        change(index, true, friend2, c);
+        change(index, true, friend1, c);
+        change(index, false, friend1, b);
+        assertThat(index.suggest(me, 10)).containsExactly(c, a, b);
+
+        change(index, true, me, c);
+        assertThat(index.suggest(me, 10)).containsExactly(a, b);
+
+        userStorage.delete(a);
+        index.userDeleted(a);
+        assertThat(index.suggest(me, 10)).containsExactly(b);
+        assertThat(rebuildTasks).isEmpty();
+    }
+
+    @Test
+    void full_delta_log_triggers_background_rebuild_with_same_result() {
+        FriendSuggestionIndex index = index(2);
+        index.rebuild();
+
+        change(index, true, friend1, c);
+        change(index, false, friend1, a);
+        assertThat(rebuildTasks).hasSize(1);
+        int[] beforeRebuild = index.suggest(me, 10);
+
+        rebuildTasks.remove(0).run();
+
+        assertThat(index.suggest(me, 10)).containsExactly(beforeRebuild).containsExactly(b, c);
+    }
+
+    @Test
+    void changes_before_first_build_are_kept() {
+        FriendSuggestionIndex index = index(10_000);
+        change(index, true, friend1, c);
+
+        index.rebuild();
+
+        assertThat(index.suggest(me, 10)).containsExactly(b, a, c);
+    }
+
+    @Test
+    void failed_rebuild_stops_logging_and_full_delta_retries_it() {
+        FriendSuggestionIndex index = index(2);
+        exportFails = true;
+        assertThatThrownBy(index::rebuild).isInstanceOf(IllegalStateException.class);
+        exportFails = false;
+
+        change(index, true, friend1, c);
+        change(index, true, friend2, c);
+        assertThat(rebuildTasks).hasSize(1);
+
+        rebuildTasks.remove(0).run();
+
+        assertThat(index.suggest(me, 10)).containsExactly(b, c, a);
+    }
+
+    private FriendSuggestionIndex index(int maxDelta) {
+        return new FriendSuggestionIndex(userStorage, rebuildTasks::add, maxDelta, 1_000_000);
+    }
+
+    private void change(FriendSuggestionIndex index, boolean add, int userId, int friendId) {
+        if (add) {
+            userStorage.addFriend(userId, friendId);
+            index.friendAdded(userId, friendId);
+        } else {
+            userStorage.deleteFriend(userId, friendId);
+            index.friendDeleted(userId, friendId);
+        }
+    }
+
+    private int create(String login) {
+        User user = new User();
+        user.setEmail(login + "@t.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.create(user).getId();
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GraphImportServiceTest {
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(new DataVersions());
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(filmStorage);
+    private final GraphImportService importService =
+            new GraphImportService(filmStorage, userStorage, new ObjectMapper(),
+                    new CoOccurrenceIndex(filmStorage, 10),
+                    new FriendSuggestionIndex(userStorage, Runnable::run, 10_000, 1_000_000));
+    private Film film;
+    private User u1;
+    private User u2;
+
+    @BeforeEach
+    void setUp() {
+        film = filmStorage.create(film());
+        u1 = userStorage.create(user("import1"));
+        u2 = userStorage.create(user("import2"));
+    }
+
+    @Test
+    void csv_likes_are_loaded_and_bad_rows_reported_with_line_numbers() throws IOException {
+        String csv = """
+                filmId,userId
+                %d,%d
+                %d, %d
+
+                %d,999
+                abc
+                %d,%d
+                """.formatted(film.getId(), u1.getId(), film.getId(), u2.getId(), film.getId(),
+                film.getId(), u1.getId());
+
+        ImportReport report = importService.importLikes(body(csv), GraphImportService.TEXT_CSV);
+
+        assertThat(report.getRows()).isEqualTo(5);
+        assertThat(report.getAccepted()).isEqualTo(3);
+        assertThat(report.getRejected()).isEqualTo(2);
+        assertThat(report.getRejectedRows())
+                .extracting(ImportReport.RejectedRow::getLine)
+                .containsExactly(5L, 6L);
+        assertThat(report.getRejectedRows().get(0).getError()).contains("999");
+        assertThat(filmStorage.getPopular(1))
+                .singleElement()
+                .satisfies(popular -> assertThat(popular.getId()).isEqualTo(film.getId()));
+    }
+
+    @Test
+    void ndjson_friends_skip_self_friendship_and_unknown_users() throws IOException {
+        String ndjson = String.join("\n",
+                "{\"userId\":%d,\"friendId\":%d}".formatted(u1.getId(), u2.getId()),
+                "{\"userId\":%d,\"friendId\":%d}".formatted(u1.getId(), u1.getId()),
+                "{\"userId\":%d,\"friendId\":999}".formatted(u2.getId()),
+                "{\"userId\":\"x\"}") + "\n";
+
+        ImportReport report = importService.importFriends(body(ndjson), MediaType.APPLICATION_NDJSON);
+
+        assertThat(report.getAccepted()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(3);
+        assertThat(userStorage.getFriends(u1.getId())).extracting(User::getId).containsExactly(u2.getId());
+        assertThat(userStorage.getFriends(u2.getId())).isEmpty();
+    }
+
+    @Test
+    void unsupported_content_type_is_rejected() {
+        assertThatThrownBy(() -> importService.importLikes(body("1,1"), MediaType.APPLICATION_JSON))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Film film() {
+        Film film = new Film();
+        film.setName("Импорт");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@t.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikeWriteBehindTest {
+
+    @TempDir
+    Path journalDir;
+
+    private InMemoryFilmStorage filmStorage;
+    private CoOccurrenceIndex coOccurrenceIndex;
+    private Film first;
+    private Film second;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage(new DataVersions());
+        coOccurrenceIndex = new CoOccurrenceIndex(filmStorage, 10);
+        first = filmStorage.create(film("Первый"));
+        second = filmStorage.create(film("Второй"));
+    }
+
+    @Test
+    void likes_reach_storage_only_after_flush() {
+        LikeWriteBehind writeBehind = writeBehind(100, 100, "");
+
+        writeBehind.like(second.getId(), 1);
+        assertThat(topFilmId()).isEqualTo(first.getId());
+        assertThat(writeBehind.pending()).isEqualTo(1);
+
+        writeBehind.flush();
+        assertThat(topFilmId()).isEqualTo(second.getId());
+        assertThat(writeBehind.pending()).isZero();
+    }
+
+    @Test
+    void like_and_unlike_of_same_pair_are_coalesced() {
+        LikeWriteBehind writeBehind = writeBehind(100, 100, "");
+
+        writeBehind.like(second.getId(), 1);
+        writeBehind.unlike(second.getId(), 1);
+        writeBehind.like(first.getId(), 2);
+        writeBehind.like(first.getId(), 2);
+        writeBehind.flush();
+
+        assertThat(topFilmId()).isEqualTo(first.getId());
+        assertThat(filmStorage.getPopular(2))
+                .extracting(Film::getId)
+                .containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    void full_buffer_is_flushed_by_caller() {
+        LikeWriteBehind writeBehind = writeBehind(2, 100, "");
+
+        writeBehind.like(second.getId(), 1);
+        writeBehind.like(second.getId(), 2);
+        writeBehind.like(first.getId(), 3);
+
+        assertThat(writeBehind.pending()).isEqualTo(1);
+        assertThat(topFilmId()).isEqualTo(second.getId());
+    }
+
+    @Test
+    void journal_survives_restart() throws IOException {
+        LikeWriteBehind beforeRestart = writeBehind(100, 100, journalDir.toString());
+        beforeRestart.like(second.getId(), 1);
+        beforeRestart.like(second.getId(), 2);
+        assertThat(topFilmId()).isEqualTo(first.getId());
+
+        LikeWriteBehind afterRestart = writeBehind(100, 100, journalDir.toString());
+        afterRestart.replayJournal();
+
+        assertThat(topFilmId()).isEqualTo(second.getId());
+        assertThat(afterRestart.pending()).isZero();
+        try (Stream<Path> files = Files.list(journalDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void index_gets_only_likes_that_reached_storage() {
+        coOccurrenceIndex.build();
+        LikeWriteBehind writeBehind = writeBehind(100, 100, "");
+        filmStorage.addLike(first.getId(), 2);
+
+        writeBehind.like(second.getId(), 1);
+        writeBehind.like(first.getId(), 2);
+        writeBehind.unlike(second.getId(), 3);
+        Film deleted = filmStorage.create(film("Удалённый"));
+        writeBehind.like(deleted.getId(), 1);
+        filmStorage.delete(deleted.getId());
+        writeBehind.flush();
+
+        // Лайк удалённого фильма не записан, повторный лайк и снятие чужого лайка ничего не меняют
+        assertThat(coOccurrenceIndex.likedFilms(1)).containsExactly(second.getId());
+        assertThat(coOccurrenceIndex.likedFilms(2)).isEmpty();
+        assertThat(coOccurrenceIndex.likedFilms(3)).isEmpty();
+    }
+
+    private LikeWriteBehind writeBehind(int capacity, int batchSize, String journalDir) {
+        // Внеочередной сброс выполняется сразу в вызывающем потоке
+        return new LikeWriteBehind(filmStorage, coOccurrenceIndex, capacity, batchSize, journalDir, Runnable::run);
+    }
+
+    private int topFilmId() {
+        return filmStorage.getPopular(1).get(0).getId();
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularFilmsCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final DataVersions dataVersions = new DataVersions();
+    private final List<Runnable> refreshTasks = new ArrayList<>();
+    private InMemoryFilmStorage filmStorage;
+    private Film second;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage(dataVersions);
+        filmStorage.create(film("Первый"));
+        second = filmStorage.create(film("Второй"));
+    }
+
+    @Test
+    void unchanged_data_is_served_from_cache() throws Exception {
+        PopularFilmsCache cache = cache(0, 10);
+
+        PopularFilmsCache.Entry entry = cache.get(2);
+
+        assertThat(cache.get(2)).isSameAs(entry);
+        assertThat(objectMapper.readTree(entry.json()))
+                .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsBytes(filmStorage.getPopular(2))));
+    }
+
+    @Test
+    void without_staleness_change_is_visible_immediately() {
+        PopularFilmsCache cache = cache(0, 10);
+        PopularFilmsCache.Entry before = cache.get(1);
+
+        filmStorage.addLike(second.getId(), 1);
+        PopularFilmsCache.Entry after = cache.get(1);
+
+        assertThat(after.version()).isGreaterThan(before.version());
+        assertThat(json(after)).contains("Второй").doesNotContain("Первый");
+        assertThat(refreshTasks).isEmpty();
+    }
+
+    @Test
+    void stale_entry_is_served_while_refresh_runs_in_background() {
+        PopularFilmsCache cache = cache(60_000, 10);
+        PopularFilmsCache.Entry before = cache.get(1);
+
+        filmStorage.addLike(second.getId(), 1);
+        assertThat(cache.get(1)).isSameAs(before);
+        assertThat(cache.get(1)).isSameAs(before);
+        assertThat(refreshTasks).hasSize(1);
+
+        refreshTasks.remove(0).run();
+        assertThat(json(cache.get(1))).contains("Второй");
+        assertThat(cache.get(1).version()).isEqualTo(dataVersions.version(DataVersions.Resource.FILMS));
+    }
+
+    @Test
+    void counts_over_limit_are_not_cached() {
+        PopularFilmsCache cache = cache(0, 1);
+
+        PopularFilmsCache.Entry cached = cache.get(1);
+        PopularFilmsCache.Entry uncached = cache.get(2);
+
+        assertThat(cache.get(1)).isSameAs(cached);
+        assertThat(cache.get(2)).isNotSameAs(uncached);
+    }
+
+    private PopularFilmsCache cache(long maxStalenessMs, int maxEntries) {
+        return new PopularFilmsCache(filmStorage, dataVersions, objectMapper, refreshTasks::add,
+                maxStalenessMs, maxEntries);
+    }
+
+    private static String json(PopularFilmsCache.Entry entry) {
+        return new String(entry.json(), StandardCharsets.UTF_8);
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecommendationServiceTest {
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(new DataVersions());
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(filmStorage);
+    private final CoOccurrenceIndex index = new CoOccurrenceIndex(filmStorage, 10);
+    private RecommendationService service;
+    private int me;
+    private int friend1;
+    private int friend2;
+    private int stranger;
+    private int f1;
+    private int f2;
+    private int f3;
+    private int f4;
+
+    @BeforeEach
+    void setUp() {
+        index.build();
+        UserService userService = new UserService(userStorage,
+                Validation.buildDefaultValidatorFactory().getValidator(), index,
+                new FriendSuggestionIndex(userStorage, Runnable::run, 10_000, 1_000_000));
+        service = new RecommendationService(userService, userStorage, filmStorage, index, 2, 10);
+
+        me = userStorage.create(user("me")).getId();
+        friend1 = userStorage.create(user("friend1")).getId();
+        friend2 = userStorage.create(user("friend2")).getId();
+        stranger = userStorage.create(user("stranger")).getId();
+        userStorage.addFriend(me, friend1);
+        userStorage.addFriend(me, friend2);
+
+        f1 = filmStorage.create(film("Первый")).getId();
+        f2 = filmStorage.create(film("Второй")).getId();
+        f3 = filmStorage.create(film("Третий")).getId();
+        f4 = filmStorage.create(film("Четвёртый")).getId();
+    }
+
+    @Test
+    void films_are_ranked_by_liking_friends_without_own_likes() {
+        like(friend1, f1);
+        like(friend1, f2);
+        like(friend2, f2);
+        like(friend2, f3);
+        like(friend1, f4);
+        like(friend2, f4);
+        like(me, f4);
+        like(stranger, f1);
+        like(stranger, f3);
+
+        assertThat(service.getRecommendations(me, 10))
+                .extracting(Film::getId)
+                .containsExactly(f2, f1, f3);
+        assertThat(service.recommend(me, 1)).containsExactly(f2);
+    }
+
+    @Test
+    void cached_result_follows_like_and_friend_changes() {
+        like(friend1, f1);
+        like(friend2, f2);
+        assertThat(service.recommend(me, 2)).containsExactly(f1, f2);
+
+        like(friend1, f3);
+        like(friend2, f3);
+        assertThat(service.recommend(me, 2)).containsExactly(f3, f1);
+
+        like(me, f3);
+        assertThat(service.recommend(me, 2)).containsExactly(f1, f2);
+
+        userStorage.deleteFriend(me, friend2);
+        assertThat(service.recommend(me, 2)).containsExactly(f1);
+
+        userStorage.addFriend(me, stranger);
+        like(stranger, f4);
+        assertThat(service.recommend(me, 2)).containsExactly(f1, f4);
+
+        // Больше max-count - считается без кэша
+        like(stranger, f2);
+        assertThat(service.recommend(me, 5)).containsExactly(f1, f2, f4);
+    }
+
+    @Test
+    void unknown_user_is_not_found() {
+        assertThatThrownBy(() -> service.getRecommendations(999_999, 10))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    private void like(int userId, int filmId) {
+        filmStorage.addLike(filmId, userId);
+        index.liked(List.of(new Like(filmId, userId)));
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@t.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserServiceTest {
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(new DataVersions());
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(filmStorage);
+    private final UserService service = new UserService(userStorage,
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            new CoOccurrenceIndex(filmStorage, 10),
+            new FriendSuggestionIndex(userStorage, Runnable::run, 10_000, 1_000_000));
+
+    @Test
+    void batch_item_colliding_with_stored_user_is_rejected_alone() {
+        User stored = userStorage.create(user("stored", "stored@t.ru"));
+        User renamed = user("stored", "stored@t.ru");
+        renamed.setId(stored.getId());
+        renamed.setName("Переименованный");
+
+        List<BatchItemResult> results = service.saveBatch(List.of(
+                user("fresh", "fresh@t.ru"),
+                user("copycat", "stored@t.ru"),
+                user("stored", "other@t.ru"),
+                renamed));
+
+        assertThat(results).extracting(BatchItemResult::getStatus).containsExactly(
+                BatchItemResult.Status.CREATED,
+                BatchItemResult.Status.REJECTED,
+                BatchItemResult.Status.REJECTED,
+                BatchItemResult.Status.UPDATED);
+        assertThat(results.get(1).getError()).contains("stored@t.ru");
+        assertThat(results.get(2).getError()).contains("stored");
+        assertThat(userStorage.getAllIds()).hasSize(2);
+        assertThat(userStorage.getById(stored.getId())).get()
+                .extracting(User::getName).isEqualTo("Переименованный");
+    }
+
+    private static User user(String login, String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
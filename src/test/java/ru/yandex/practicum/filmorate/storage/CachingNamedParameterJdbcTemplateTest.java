@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingNamedParameterJdbcTemplateTest {
+
+    @Test
+    void same_sql_is_parsed_once_and_counted_as_hits() {
+        CachingNamedParameterJdbcTemplate jdbc = new CachingNamedParameterJdbcTemplate(new JdbcTemplate(), 10);
+        String sql = "SELECT * FROM users WHERE id = :id";
+
+        assertThat(jdbc.getParsedSql(sql)).isSameAs(jdbc.getParsedSql(sql));
+        jdbc.getParsedSql(sql);
+
+        assertThat(jdbc.misses()).isEqualTo(1);
+        assertThat(jdbc.hits()).isEqualTo(2);
+        assertThat(jdbc.size()).isEqualTo(1);
+        assertThat(jdbc.hitRatio()).isEqualTo(2.0 / 3);
+    }
+
+    @Test
+    void sql_over_limit_is_parsed_every_time() {
+        CachingNamedParameterJdbcTemplate jdbc = new CachingNamedParameterJdbcTemplate(new JdbcTemplate(), 1);
+
+        jdbc.getParsedSql("SELECT 1 WHERE 1 = :a");
+        jdbc.getParsedSql("SELECT 2 WHERE 2 = :b");
+        jdbc.getParsedSql("SELECT 2 WHERE 2 = :b");
+
+        assertThat(jdbc.size()).isEqualTo(1);
+        assertThat(jdbc.misses()).isEqualTo(3);
+        assertThat(jdbc.hits()).isZero();
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DataVersionsTest {
+
+    private final DataVersions dataVersions = new DataVersions();
+
+    @Test
+    void etag_is_strong_and_stable_until_bump() {
+        String etag = dataVersions.etag(DataVersions.Resource.FILMS);
+
+        assertThat(etag).startsWith("\"films-").endsWith("\"");
+        assertThat(dataVersions.etag(DataVersions.Resource.FILMS)).isEqualTo(etag);
+
+        dataVersions.bump(DataVersions.Resource.FILMS);
+        assertThat(dataVersions.etag(DataVersions.Resource.FILMS)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void resources_have_independent_versions() {
+        String genres = dataVersions.etag(DataVersions.Resource.GENRES);
+
+        dataVersions.bump(DataVersions.Resource.FILMS);
+
+        assertThat(dataVersions.etag(DataVersions.Resource.GENRES)).isEqualTo(genres);
+    }
+
+    @Test
+    void film_storage_mutations_change_films_etag() {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(dataVersions);
+
+        String beforeCreate = dataVersions.etag(DataVersions.Resource.FILMS);
+        Film film = filmStorage.create(film());
+        String afterCreate = dataVersions.etag(DataVersions.Resource.FILMS);
+        assertThat(afterCreate).isNotEqualTo(beforeCreate);
+
+        filmStorage.getPopular(10);
+        filmStorage.getById(film.getId());
+        assertThat(dataVersions.etag(DataVersions.Resource.FILMS)).isEqualTo(afterCreate);
+
+        filmStorage.addLike(film.getId(), 1);
+        String afterLike = dataVersions.etag(DataVersions.Resource.FILMS);
+        assertThat(afterLike).isNotEqualTo(afterCreate);
+
+        filmStorage.deleteLike(film.getId(), 1);
+        assertThat(dataVersions.etag(DataVersions.Resource.FILMS)).isNotEqualTo(afterLike);
+    }
+
+    private static Film film() {
+        Film film = new Film();
+        film.setName("Версия");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntAdjacencyTest {
+
+    private final IntAdjacency adjacency = new IntAdjacency();
+
+    @Test
+    void add_keeps_targets_sorted_and_unique() {
+        assertThat(adjacency.add(1, 5)).isTrue();
+        assertThat(adjacency.add(1, 3)).isTrue();
+        assertThat(adjacency.add(1, 5)).isFalse();
+
+        assertThat(adjacency.get(1)).containsExactly(3, 5);
+        assertThat(adjacency.degree(1)).isEqualTo(2);
+        assertThat(adjacency.edgesCount()).isEqualTo(2);
+    }
+
+    @Test
+    void add_and_remove_across_append_buffer_merges() {
+        int count = IntAdjacency.APPEND_BUFFER_SIZE * 3 + 1;
+        for (int i = count; i > 0; i--) {
+            adjacency.add(7, i);
+        }
+        assertThat(adjacency.degree(7)).isEqualTo(count);
+        assertThat(adjacency.get(7)).startsWith(1, 2, 3).endsWith(count);
+
+        assertThat(adjacency.remove(7, 1)).isTrue();
+        assertThat(adjacency.remove(7, count)).isTrue();
+        assertThat(adjacency.remove(7, count)).isFalse();
+        assertThat(adjacency.contains(7, 1)).isFalse();
+        assertThat(adjacency.contains(7, 2)).isTrue();
+        assertThat(adjacency.edgesCount()).isEqualTo(count - 2);
+    }
+
+    @Test
+    void removeNode_and_removeTarget() {
+        adjacency.add(1, 2);
+        adjacency.add(1, 3);
+        adjacency.add(2, 3);
+        adjacency.add(3, 1);
+
+        adjacency.removeTarget(3);
+        assertThat(adjacency.get(1)).containsExactly(2);
+        assertThat(adjacency.get(2)).isEmpty();
+
+        adjacency.removeNode(1);
+        assertThat(adjacency.get(1)).isEmpty();
+        assertThat(adjacency.edgesCount()).isEqualTo(1);
+    }
+
+    @Test
+    void get_compacts_append_buffer_once_and_returns_shared_array() {
+        adjacency.add(1, 5);
+        adjacency.add(1, 3);
+
+        int[] first = adjacency.get(1);
+        assertThat(first).containsExactly(3, 5);
+        assertThat(adjacency.get(1)).isSameAs(first);
+
+        adjacency.add(1, 4);
+        assertThat(adjacency.get(1)).containsExactly(3, 4, 5);
+        assertThat(first).containsExactly(3, 5);
+        assertThat(adjacency.edgesCount()).isEqualTo(3);
+    }
+
+    @Test
+    void reverse_index_follows_adds_removes_and_node_deletes() {
+        IntAdjacency indexed = IntAdjacency.withReverseIndex();
+        indexed.add(1, 3);
+        indexed.add(2, 3);
+        indexed.add(4, 3);
+        indexed.add(1, 2);
+        indexed.remove(2, 3);
+        indexed.removeNode(4);
+
+        indexed.removeTarget(3);
+        assertThat(indexed.get(1)).containsExactly(2);
+        assertThat(indexed.get(2)).isEmpty();
+        assertThat(indexed.get(4)).isEmpty();
+        assertThat(indexed.edgesCount()).isEqualTo(1);
+
+        // Связь, добавленная после removeTarget, снова попадает в обратный индекс
+        indexed.add(5, 3);
+        indexed.removeTarget(3);
+        assertThat(indexed.get(5)).isEmpty();
+        assertThat(indexed.edgesCount()).isEqualTo(1);
+    }
+
+    @Test
+    void intersect_sorted_arrays() {
+        assertThat(IntAdjacency.intersect(new int[]{1, 3, 5, 7}, new int[]{2, 3, 4, 7, 9}))
+                .containsExactly(3, 7);
+        assertThat(IntAdjacency.intersect(new int[]{}, new int[]{1})).isEmpty();
+    }
+
+    @Test
+    void intersect_small_with_large_array() {
+        int[] large = new int[IntAdjacency.GALLOP_RATIO * 10];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = i * 2;
+        }
+
+        assertThat(IntAdjacency.intersect(new int[]{1, 4, 7, 100, 10_000}, large))
+                .containsExactly(4, 100);
+        assertThat(IntAdjacency.intersect(large, new int[]{0, 3, 638}))
+                .containsExactly(0, 638);
+    }
+
+    @Test
+    void memoryFootprint_is_reported_per_edge() {
+        assertThat(adjacency.bytesPerEdge()).isZero();
+
+        for (int node = 1; node <= 10; node++) {
+            for (int target = 1; target <= 1000; target++) {
+                adjacency.add(node, target);
+            }
+        }
+        assertThat(adjacency.bytesPerEdge()).isBetween(4.0, 8.0);
+    }
+}
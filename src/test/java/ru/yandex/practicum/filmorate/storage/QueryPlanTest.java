@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.KeyHolder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Запоминает все запросы, которые хранилища выполнили через NamedParameterJdbcTemplate, включая пакетные,
+ * и проверяет по EXPLAIN, что ни один из них не читает таблицу целиком. Запросы через getJdbcTemplate()
+ * записываются отдельно: это выгрузки и загрузки целиком по замыслу, они перечислены в тесте явно.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({
+        QueryPlanTest.RecordingConfig.class,
+        FilmDbStorage.class,
+        FilmRowMapper.class,
+        GenreDbStorage.class,
+        GenreRowMapper.class,
+        UserDbStorage.class,
+        UserRowMapper.class,
+        DataVersions.class
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class QueryPlanTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final GenreDbStorage genreStorage;
+    private final RecordingJdbcTemplate recordingJdbc;
+    private final DataSource dataSource;
+
+    @BeforeEach
+    void warmUpDictionaries() {
+        // Справочники загружаются в кэш целиком - это полное чтение по замыслу
+        genreStorage.getAll();
+        // Граф дружбы тоже загружается в память целиком при первом обращении
+        userStorage.getFriendIds(0);
+        recordingJdbc.statements.clear();
+        recordingJdbc.fullReads.clear();
+    }
+
+    @Test
+    void film_and_user_queries_use_indexes() {
+        User u1 = userStorage.create(user("plan1"));
+        User u2 = userStorage.create(user("plan2"));
+        User u3 = userStorage.create(user("plan3"));
+        Film film = filmStorage.create(film("План"));
+        Film other = filmStorage.create(film("План 2"));
+
+        userStorage.getById(u1.getId());
+        userStorage.getAll(0, 10);
+        userStorage.getByIds(List.of(u1.getId(), u2.getId()));
+        userStorage.exists(u1.getId());
+        userStorage.getByEmailsOrLogins(List.of(u1.getEmail()), List.of(u2.getLogin()));
+        userStorage.update(u1);
+        userStorage.addFriend(u1.getId(), u3.getId());
+        userStorage.addFriend(u2.getId(), u3.getId());
+        userStorage.getFriends(u1.getId());
+        userStorage.getCommonFriends(u1.getId(), u2.getId());
+        userStorage.deleteFriend(u1.getId(), u3.getId());
+
+        filmStorage.getById(film.getId());
+        filmStorage.getAll(0, 10);
+        filmStorage.exists(film.getId());
+        film.setGenres(Set.of(new Genre(2, null), new Genre(3, null)));
+        filmStorage.update(film);
+        filmStorage.addLike(film.getId(), u1.getId());
+        filmStorage.deleteLike(film.getId(), u1.getId());
+        filmStorage.getPopular(10);
+        filmStorage.getPopular(10, 2, 1, 2000);
+        filmStorage.getPopular(10, null, 1, 2000);
+        filmStorage.getPopular(10, null, 1, null);
+
+        filmStorage.addLikes(List.of(new Like(film.getId(), u1.getId()), new Like(film.getId(), u3.getId())));
+        filmStorage.deleteLikes(List.of(new Like(film.getId(), u3.getId())));
+        filmStorage.updateAll(List.of(film));
+        userStorage.updateAll(List.of(u1, u3));
+        userStorage.addFriends(List.of(new Friendship(u3.getId(), u1.getId())));
+
+        filmStorage.delete(other.getId());
+        userStorage.delete(u2.getId());
+        assertThat(recordingJdbc.fullReads)
+                .as("Полные чтения вне выгрузок")
+                .isEmpty();
+
+        // Полные чтения по замыслу: выгрузки и списки всех id
+        filmStorage.getAllIds();
+        userStorage.getAllIds();
+        filmStorage.forEach(exported -> { });
+        filmStorage.forEachLike(like -> { });
+        userStorage.forEachFriendship(friendship -> { });
+        assertThat(recordingJdbc.fullReads).hasSize(5);
+
+        NamedParameterJdbcTemplate explainJdbc = new NamedParameterJdbcTemplate(dataSource);
+        List<RecordedStatement> statements = recordingJdbc.statements.stream()
+                .filter(statement -> !statement.sql().strip().toUpperCase().startsWith("INSERT"))
+                .toList();
+        assertThat(statements).isNotEmpty();
+
+        for (RecordedStatement statement : statements) {
+            String plan = String.join("\n",
+                    explainJdbc.queryForList("EXPLAIN " + statement.sql(), statement.params(), String.class));
+            assertThat(plan)
+                    .as("План запроса:%n%s", statement.sql())
+                    .doesNotContainIgnoringCase("tableScan");
+        }
+    }
+
+    @Test
+    void reverse_lookups_use_indexes() {
+        NamedParameterJdbcTemplate explainJdbc = new NamedParameterJdbcTemplate(dataSource);
+        List<String> reverseLookups = List.of(
+                "SELECT film_id FROM likes WHERE user_id = 1",
+                "SELECT user_id FROM friends WHERE friend_id = 1",
+                "SELECT film_id FROM film_genres WHERE genre_id = 1"
+        );
+
+        for (String query : reverseLookups) {
+            String plan = explainJdbc.getJdbcTemplate().queryForObject("EXPLAIN " + query, String.class);
+            assertThat(plan)
+                    .as("План запроса:%n%s", query)
+                    .doesNotContainIgnoringCase("tableScan");
+        }
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@t.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new MpaRating(1, null, null));
+        film.setGenres(Set.of(new Genre(1, null), new Genre(2, null)));
+        return film;
+    }
+
+    record RecordedStatement(String sql, SqlParameterSource params) {
+    }
+
+    static class RecordingJdbcTemplate extends NamedParameterJdbcTemplate {
+        private final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+        private final List<String> fullReads;
+
+        RecordingJdbcTemplate(RecordingClassicJdbcTemplate classicJdbcTemplate) {
+            super(classicJdbcTemplate);
+            this.fullReads = classicJdbcTemplate.queries;
+        }
+
+        @Override
+        protected PreparedStatementCreator getPreparedStatementCreator(String sql, SqlParameterSource paramSource,
+                Consumer<PreparedStatementCreatorFactory> customizer) {
+            statements.add(new RecordedStatement(sql, paramSource));
+            return super.getPreparedStatementCreator(sql, paramSource, customizer);
+        }
+
+        // Пакет выполняет один запрос с разными параметрами - для плана достаточно первых
+        @Override
+        public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs) {
+            if (batchArgs.length > 0) {
+                statements.add(new RecordedStatement(sql, batchArgs[0]));
+            }
+            return super.batchUpdate(sql, batchArgs);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs, KeyHolder generatedKeyHolder,
+                String[] keyColumnNames) {
+            if (batchArgs.length > 0) {
+                statements.add(new RecordedStatement(sql, batchArgs[0]));
+            }
+            return super.batchUpdate(sql, batchArgs, generatedKeyHolder, keyColumnNames);
+        }
+    }
+
+    // JdbcTemplate за getJdbcTemplate(): хранилища передают ему SQL строкой или создают запрос в лямбде
+    static class RecordingClassicJdbcTemplate extends JdbcTemplate {
+        private final List<String> queries = new CopyOnWriteArrayList<>();
+
+        RecordingClassicJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch) {
+            queries.add(sql);
+            super.query(sql, rch);
+        }
+
+        @Override
+        public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+            if (psc instanceof SqlProvider) {
+                // Запрос NamedParameterJdbcTemplate - уже записан в getPreparedStatementCreator
+                super.query(psc, rch);
+                return;
+            }
+            super.query(connection -> psc.createPreparedStatement(recording(connection)), rch);
+        }
+
+        private Connection recording(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("prepareStatement")) {
+                            queries.add((String) args[0]);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    });
+        }
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+        @Bean
+        RecordingJdbcTemplate recordingJdbcTemplate(DataSource dataSource) {
+            return new RecordingJdbcTemplate(new RecordingClassicJdbcTemplate(dataSource));
+        }
+    }
+}
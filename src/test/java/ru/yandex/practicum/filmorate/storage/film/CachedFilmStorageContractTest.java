@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.CachedUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({
+        FilmDbStorage.class,
+        FilmRowMapper.class,
+        GenreDbStorage.class,
+        GenreRowMapper.class,
+        UserDbStorage.class,
+        UserRowMapper.class,
+        DataVersions.class
+})
+class CachedFilmStorageContractTest extends FilmStorageContractTest {
+
+    private final CachedFilmStorage filmStorage;
+    private final CachedUserStorage userStorage;
+
+    @Autowired
+    CachedFilmStorageContractTest(FilmDbStorage filmDbStorage, UserDbStorage userDbStorage) {
+        this.filmStorage = new CachedFilmStorage(filmDbStorage);
+        this.userStorage = new CachedUserStorage(userDbStorage, filmStorage);
+    }
+
+    @Override
+    protected FilmStorage films() {
+        return filmStorage;
+    }
+
+    @Override
+    protected UserStorage users() {
+        return userStorage;
+    }
+
+    @Test
+    void cached_popular_is_reset_after_like_and_user_delete() {
+        Film f1 = filmStorage.create(film("C1", 1, Set.of()));
+        Film f2 = filmStorage.create(film("C2", 1, Set.of()));
+        User user = userStorage.create(user("cached"));
+
+        assertThat(filmStorage.getPopular(1)).extracting(Film::getId).containsExactly(f1.getId());
+
+        filmStorage.addLike(f2.getId(), user.getId());
+        assertThat(filmStorage.getPopular(1)).extracting(Film::getId).containsExactly(f2.getId());
+
+        userStorage.delete(user.getId());
+        assertThat(filmStorage.getPopular(1)).extracting(Film::getId).containsExactly(f1.getId());
+    }
+}
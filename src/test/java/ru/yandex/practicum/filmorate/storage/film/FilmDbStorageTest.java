@@ -6,17 +6,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
-import ru.yandex.practicum.filmorate.storage.mapper.GenreOfFilmRowMapper;
 import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -28,10 +32,10 @@ import static org.assertj.core.api.Assertions.assertThat;
         FilmDbStorage.class,
         FilmRowMapper.class,
         GenreDbStorage.class,
-        GenreOfFilmRowMapper.class,
         GenreRowMapper.class,
         UserDbStorage.class,
-        UserRowMapper.class
+        UserRowMapper.class,
+        DataVersions.class
 })
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class FilmDbStorageTest {
@@ -39,6 +43,7 @@ class FilmDbStorageTest {
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
     private final GenreDbStorage genreDbStorage;
+    private final NamedParameterJdbcTemplate jdbc;
 
     @Test
     void create_and_getById_with_genres() {
@@ -83,6 +88,39 @@ class FilmDbStorageTest {
                 );
     }
 
+    @Test
+    void updateWithOverlappingGenres() {
+        Film f = new Film();
+        f.setName("F2");
+        f.setDescription("D2");
+        f.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f.setDuration(90);
+        f.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        f = filmStorage.create(f);
+
+        f.setGenres(Set.of(new Genre(2, "Драма"), new Genre(3, "Мультфильм")));
+        filmStorage.update(f);
+
+        assertThat(filmStorage.getById(f.getId()))
+                .isPresent()
+                .hasValueSatisfying(found -> {
+                            genreDbStorage.joinGenresToFilms(List.of(found));
+                            assertThat(found.getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(2, 3);
+                        }
+                );
+
+        f.setGenres(null);
+        filmStorage.update(f);
+
+        assertThat(filmStorage.getById(f.getId()))
+                .isPresent()
+                .hasValueSatisfying(found -> {
+                            genreDbStorage.joinGenresToFilms(List.of(found));
+                            assertThat(found.getGenres()).isEmpty();
+                        }
+                );
+    }
+
     @Test
     void likes_and_popular_order() {
         User u1 = new User();
@@ -129,6 +167,168 @@ class FilmDbStorageTest {
                 .containsExactly(f2.getId(), f1.getId());
     }
 
+    @Test
+    void duplicate_like_does_not_change_popularity() {
+        User u1 = new User();
+        u1.setEmail("d1@t.ru");
+        u1.setLogin("d1");
+        u1.setName("d1");
+        u1.setBirthday(LocalDate.of(1990, 1, 1));
+        u1 = userStorage.create(u1);
+
+        Film f1 = new Film();
+        f1.setName("D1");
+        f1.setDescription("d");
+        f1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f1.setDuration(100);
+        f1 = filmStorage.create(f1);
+
+        filmStorage.addLike(f1.getId(), u1.getId());
+        filmStorage.addLike(f1.getId(), u1.getId());
+        filmStorage.deleteLike(f1.getId(), u1.getId());
+        filmStorage.deleteLike(f1.getId(), u1.getId());
+
+        assertThat(likesCountOf(f1.getId())).isZero();
+    }
+
+    @Test
+    void deleting_user_removes_likes_from_count() {
+        User u1 = new User();
+        u1.setEmail("du1@t.ru");
+        u1.setLogin("du1");
+        u1.setName("du1");
+        u1.setBirthday(LocalDate.of(1990, 1, 1));
+        u1 = userStorage.create(u1);
+
+        Film f1 = new Film();
+        f1.setName("DU1");
+        f1.setDescription("d");
+        f1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f1.setDuration(100);
+        f1 = filmStorage.create(f1);
+
+        filmStorage.addLike(f1.getId(), u1.getId());
+        assertThat(likesCountOf(f1.getId())).isEqualTo(1);
+
+        userStorage.delete(u1.getId());
+
+        assertThat(likesCountOf(f1.getId())).isZero();
+        assertThat(filmStorage.recalculateLikesCount()).isZero();
+    }
+
+    @Test
+    void batch_likes_keep_likes_count_exact() {
+        User u1 = new User();
+        u1.setEmail("bl1@t.ru");
+        u1.setLogin("bl1");
+        u1.setName("bl1");
+        u1.setBirthday(LocalDate.of(1990, 1, 1));
+        u1 = userStorage.create(u1);
+
+        Film f1 = new Film();
+        f1.setName("BL1");
+        f1.setDescription("d");
+        f1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f1.setDuration(100);
+        f1 = filmStorage.create(f1);
+
+        filmStorage.addLike(f1.getId(), u1.getId());
+        filmStorage.addLikes(List.of(
+                new Like(f1.getId(), u1.getId()),
+                new Like(f1.getId(), 999_999)
+        ));
+        assertThat(likesCountOf(f1.getId())).isEqualTo(1);
+
+        filmStorage.deleteLikes(List.of(new Like(f1.getId(), u1.getId()), new Like(f1.getId(), u1.getId())));
+        assertThat(likesCountOf(f1.getId())).isZero();
+        assertThat(filmStorage.recalculateLikesCount()).isZero();
+    }
+
+    @Test
+    void recalculateLikesCount_repairs_drift() {
+        User u1 = new User();
+        u1.setEmail("r1@t.ru");
+        u1.setLogin("r1");
+        u1.setName("r1");
+        u1.setBirthday(LocalDate.of(1990, 1, 1));
+        u1 = userStorage.create(u1);
+
+        Film f1 = new Film();
+        f1.setName("R1");
+        f1.setDescription("d");
+        f1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f1.setDuration(100);
+        f1 = filmStorage.create(f1);
+
+        filmStorage.addLike(f1.getId(), u1.getId());
+        jdbc.update("UPDATE films SET likes_count = 42 WHERE id = :id",
+                new MapSqlParameterSource("id", f1.getId()));
+
+        assertThat(filmStorage.recalculateLikesCount()).isEqualTo(1);
+        assertThat(likesCountOf(f1.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void getAll_pages_by_id() {
+        Film f1 = new Film();
+        f1.setName("G1");
+        f1.setDescription("d");
+        f1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f1.setDuration(100);
+        f1 = filmStorage.create(f1);
+
+        Film f2 = new Film();
+        f2.setName("G2");
+        f2.setDescription("d");
+        f2.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f2.setDuration(100);
+        f2 = filmStorage.create(f2);
+
+        assertThat(filmStorage.getAll(f1.getId() - 1, 1))
+                .extracting(Film::getId)
+                .containsExactly(f1.getId());
+
+        assertThat(filmStorage.getAll(f1.getId(), 10))
+                .extracting(Film::getId)
+                .containsExactly(f2.getId());
+    }
+
+    @Test
+    void forEach_streams_films_with_genres_in_id_order() {
+        Film f1 = new Film();
+        f1.setName("E1");
+        f1.setDescription("d");
+        f1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f1.setDuration(100);
+        f1.setGenres(Set.of(new Genre(2, "Драма"), new Genre(1, "Комедия")));
+        Integer id1 = filmStorage.create(f1).getId();
+
+        Film f2 = new Film();
+        f2.setName("E2");
+        f2.setDescription("d");
+        f2.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f2.setDuration(100);
+        Integer id2 = filmStorage.create(f2).getId();
+
+        List<Film> exported = new ArrayList<>();
+        filmStorage.forEach(exported::add);
+
+        assertThat(exported)
+                .extracting(Film::getId)
+                .isSorted()
+                .contains(id1, id2);
+        assertThat(exported)
+                .filteredOn(film -> film.getId().equals(id1))
+                .singleElement()
+                .satisfies(film -> assertThat(film.getGenres())
+                        .extracting(Genre::getName)
+                        .containsExactly("Комедия", "Драма"));
+        assertThat(exported)
+                .filteredOn(film -> film.getId().equals(id2))
+                .singleElement()
+                .satisfies(film -> assertThat(film.getGenres()).isEmpty());
+    }
+
     @Test
     void delete_removes_film() {
         Film f = new Film();
@@ -138,9 +338,12 @@ class FilmDbStorageTest {
         f.setDuration(100);
         f = filmStorage.create(f);
 
+        assertThat(filmStorage.exists(f.getId())).isTrue();
+
         filmStorage.delete(f.getId());
 
         assertThat(filmStorage.getById(f.getId())).isEmpty();
+        assertThat(filmStorage.exists(f.getId())).isFalse();
     }
 
     @Test
@@ -159,4 +362,51 @@ class FilmDbStorageTest {
                 .isPresent()
                 .hasValueSatisfying(found -> assertThat(found.getMpa()).isNull());
     }
+
+    @Test
+    void genre_likes_count_follows_likes_user_deletion_and_recalculation() {
+        User u1 = new User();
+        u1.setEmail("gl1@t.ru");
+        u1.setLogin("gl1");
+        u1.setName("gl1");
+        u1.setBirthday(LocalDate.of(1990, 1, 1));
+        u1 = userStorage.create(u1);
+
+        User u2 = new User();
+        u2.setEmail("gl2@t.ru");
+        u2.setLogin("gl2");
+        u2.setName("gl2");
+        u2.setBirthday(LocalDate.of(1991, 1, 1));
+        u2 = userStorage.create(u2);
+
+        Film f1 = new Film();
+        f1.setName("GL1");
+        f1.setDescription("d");
+        f1.setReleaseDate(LocalDate.of(2020, 1, 1));
+        f1.setDuration(100);
+        f1.setGenres(Set.of(new Genre(1, null), new Genre(2, null)));
+        f1 = filmStorage.create(f1);
+
+        filmStorage.addLike(f1.getId(), u1.getId());
+        filmStorage.addLikes(List.of(new Like(f1.getId(), u2.getId())));
+        assertThat(genreLikesCountsOf(f1.getId())).containsExactly(2, 2);
+
+        userStorage.delete(u2.getId());
+        assertThat(genreLikesCountsOf(f1.getId())).containsExactly(1, 1);
+
+        jdbc.update("UPDATE film_genres SET likes_count = 42 WHERE film_id = :id",
+                new MapSqlParameterSource("id", f1.getId()));
+        assertThat(filmStorage.recalculateLikesCount()).isZero();
+        assertThat(genreLikesCountsOf(f1.getId())).containsExactly(1, 1);
+    }
+
+    private int likesCountOf(int filmId) {
+        return jdbc.queryForObject("SELECT likes_count FROM films WHERE id = :id",
+                new MapSqlParameterSource("id", filmId), Integer.class);
+    }
+
+    private List<Integer> genreLikesCountsOf(int filmId) {
+        return jdbc.queryForList("SELECT likes_count FROM film_genres WHERE film_id = :id ORDER BY genre_id",
+                new MapSqlParameterSource("id", filmId), Integer.class);
+    }
 }
@@ -0,0 +1,334 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DbStorageException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Общие проверки для всех реализаций FilmStorage: каждая реализация должна вести себя одинаково.
+ *
+ * Проверки объявлены здесь, поэтому и @Transactional здесь: Spring ищет его на классе метода,
+ * а не на наследнике. Для JDBC-реализаций каждая проверка откатывается, для памяти аннотация ни на что не влияет.
+ */
+@Transactional
+abstract class FilmStorageContractTest {
+
+    protected abstract FilmStorage films();
+
+    // Пользователи для лайков - из хранилища той же реализации
+    protected abstract UserStorage users();
+
+    @Test
+    void contract_create_assigns_id_and_getById_returns_film() {
+        Film created = films().create(film("Контракт", 1, Set.of(1, 2)));
+
+        assertThat(created.getId()).isNotNull();
+        assertThat(films().exists(created.getId())).isTrue();
+        assertThat(films().getById(created.getId()))
+                .isPresent()
+                .hasValueSatisfying(found -> {
+                    assertThat(found.getName()).isEqualTo("Контракт");
+                    assertThat(found.getMpa().getId()).isEqualTo(1);
+                    assertThat(found.getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(1, 2);
+                });
+    }
+
+    @Test
+    void contract_getById_and_exists_for_missing_film() {
+        assertThat(films().getById(999_999)).isEmpty();
+        assertThat(films().exists(999_999)).isFalse();
+    }
+
+    @Test
+    void contract_update_replaces_fields() {
+        Film film = films().create(film("До", 1, Set.of(1)));
+
+        Film changed = film("После", 2, Set.of(2, 3));
+        changed.setId(film.getId());
+        films().update(changed);
+
+        assertThat(films().getById(film.getId()))
+                .isPresent()
+                .hasValueSatisfying(found -> {
+                    assertThat(found.getName()).isEqualTo("После");
+                    assertThat(found.getMpa().getId()).isEqualTo(2);
+                    assertThat(found.getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(2, 3);
+                });
+    }
+
+    @Test
+    void contract_update_of_missing_film_fails() {
+        Film missing = film("Нет", 1, Set.of());
+        missing.setId(999_999);
+
+        assertThatThrownBy(() -> films().update(missing)).isInstanceOf(DbStorageException.class);
+    }
+
+    @Test
+    void contract_batch_create_and_update_write_genres_and_skip_missing_films() {
+        List<Film> created = films().createAll(new ArrayList<>(List.of(
+                film("Пакет1", 1, Set.of(1, 2)),
+                film("Пакет2", 2, Set.of()))));
+
+        assertThat(created).extracting(Film::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(films().getById(created.get(0).getId()))
+                .hasValueSatisfying(found ->
+                        assertThat(found.getGenres()).extracting(Genre::getId).containsExactlyInAnyOrder(1, 2));
+
+        Film changed = film("Пакет1-новый", 3, Set.of(3));
+        changed.setId(created.get(0).getId());
+        Film missing = film("Нет", 1, Set.of(1));
+        missing.setId(999_999);
+
+        assertThat(films().updateAll(List.of(changed, missing)))
+                .extracting(Film::getId)
+                .containsExactly(changed.getId());
+        assertThat(films().getById(changed.getId()))
+                .hasValueSatisfying(found -> {
+                    assertThat(found.getName()).isEqualTo("Пакет1-новый");
+                    assertThat(found.getMpa().getId()).isEqualTo(3);
+                    assertThat(found.getGenres()).extracting(Genre::getId).containsExactly(3);
+                });
+        assertThat(films().exists(999_999)).isFalse();
+    }
+
+    @Test
+    void contract_getAll_pages_in_id_order() {
+        Film f1 = films().create(film("P1", 1, Set.of()));
+        Film f2 = films().create(film("P2", 1, Set.of()));
+        Film f3 = films().create(film("P3", 1, Set.of()));
+
+        assertThat(films().getAll(f1.getId() - 1, 2))
+                .extracting(Film::getId)
+                .containsExactly(f1.getId(), f2.getId());
+        assertThat(films().getAll(f2.getId(), 10))
+                .extracting(Film::getId)
+                .containsExactly(f3.getId());
+    }
+
+    @Test
+    void contract_forEach_visits_films_in_id_order() {
+        Film f1 = films().create(film("E1", 1, Set.of()));
+        Film f2 = films().create(film("E2", 1, Set.of()));
+
+        List<Integer> visited = new ArrayList<>();
+        films().forEach(film -> visited.add(film.getId()));
+
+        assertThat(visited).isSorted().contains(f1.getId(), f2.getId());
+    }
+
+    @Test
+    void contract_delete_removes_film() {
+        Film film = films().create(film("Удалить", 1, Set.of()));
+
+        films().delete(film.getId());
+
+        assertThat(films().getById(film.getId())).isEmpty();
+        assertThat(films().exists(film.getId())).isFalse();
+    }
+
+    @Test
+    void contract_popular_orders_by_likes_then_id_and_includes_films_without_likes() {
+        Film f1 = films().create(film("L1", 1, Set.of()));
+        Film f2 = films().create(film("L2", 1, Set.of()));
+        Film f3 = films().create(film("L3", 1, Set.of()));
+        User u1 = users().create(user("like1"));
+        User u2 = users().create(user("like2"));
+
+        films().addLike(f2.getId(), u1.getId());
+        films().addLike(f2.getId(), u2.getId());
+        films().addLike(f2.getId(), u2.getId());
+        films().addLike(f3.getId(), u1.getId());
+
+        assertThat(popularAmong(f1, f2, f3)).containsExactly(f2.getId(), f3.getId(), f1.getId());
+
+        films().deleteLike(f2.getId(), u1.getId());
+        films().deleteLike(f2.getId(), u2.getId());
+        films().deleteLike(f2.getId(), u2.getId());
+
+        assertThat(popularAmong(f1, f2, f3)).containsExactly(f3.getId(), f1.getId(), f2.getId());
+    }
+
+    @Test
+    void contract_user_delete_drops_their_likes_from_popular() {
+        Film f1 = films().create(film("D1", 1, Set.of(1)));
+        Film f2 = films().create(film("D2", 1, Set.of(1)));
+        User fan = users().create(user("deleted1"));
+        User other = users().create(user("deleted2"));
+        films().addLikes(List.of(
+                new Like(f2.getId(), fan.getId()),
+                new Like(f2.getId(), other.getId()),
+                new Like(f1.getId(), other.getId())));
+        assertThat(popularAmong(f1, f2)).containsExactly(f2.getId(), f1.getId());
+
+        users().delete(fan.getId());
+
+        assertThat(popularAmong(f1, f2)).containsExactly(f1.getId(), f2.getId());
+        assertThat(filteredPopularAmong(1, null, null, f1, f2)).containsExactly(f1.getId(), f2.getId());
+        List<Like> likes = new ArrayList<>();
+        films().forEachLike(likes::add);
+        assertThat(likes).noneMatch(like -> like.getUserId() == fan.getId());
+    }
+
+    @Test
+    void contract_batch_likes_skip_duplicates_and_missing_films() {
+        Film f1 = films().create(film("B1", 1, Set.of()));
+        Film f2 = films().create(film("B2", 1, Set.of()));
+        Film f3 = films().create(film("B3", 1, Set.of()));
+        User u1 = users().create(user("batch1"));
+        User u2 = users().create(user("batch2"));
+
+        List<Like> added = films().addLikes(List.of(
+                new Like(f3.getId(), u1.getId()),
+                new Like(f3.getId(), u2.getId()),
+                new Like(f3.getId(), u2.getId()),
+                new Like(f2.getId(), u1.getId()),
+                new Like(999_999, u1.getId())
+        ));
+        assertThat(added).containsExactly(
+                new Like(f3.getId(), u1.getId()),
+                new Like(f3.getId(), u2.getId()),
+                new Like(f2.getId(), u1.getId()));
+        assertThat(popularAmong(f1, f2, f3)).containsExactly(f3.getId(), f2.getId(), f1.getId());
+
+        List<Like> deleted = films().deleteLikes(List.of(
+                new Like(f3.getId(), u1.getId()),
+                new Like(f3.getId(), u2.getId()),
+                new Like(f1.getId(), u1.getId())
+        ));
+        assertThat(deleted).containsExactly(new Like(f3.getId(), u1.getId()), new Like(f3.getId(), u2.getId()));
+        assertThat(popularAmong(f1, f2, f3)).containsExactly(f2.getId(), f1.getId(), f3.getId());
+    }
+
+    @Test
+    void contract_getByIds_returns_existing_films_in_id_order_and_forEachLike_visits_all_likes() {
+        Film f1 = films().create(film("S1", 1, Set.of(1)));
+        Film f2 = films().create(film("S2", 1, Set.of()));
+        User u1 = users().create(user("similar1"));
+        User u2 = users().create(user("similar2"));
+        films().addLikes(List.of(
+                new Like(f1.getId(), u1.getId()),
+                new Like(f2.getId(), u1.getId()),
+                new Like(f2.getId(), u2.getId())
+        ));
+
+        assertThat(films().getByIds(List.of(f2.getId(), 999_999, f1.getId(), f2.getId())))
+                .extracting(Film::getId)
+                .containsExactly(f1.getId(), f2.getId());
+        assertThat(films().getByIds(List.of(f1.getId())).get(0).getGenres()).extracting(Genre::getId)
+                .containsExactly(1);
+        assertThat(films().getByIds(List.of())).isEmpty();
+
+        Set<Integer> ids = Set.of(f1.getId(), f2.getId());
+        List<Like> likes = new ArrayList<>();
+        films().forEachLike(like -> {
+            if (ids.contains(like.getFilmId())) {
+                likes.add(like);
+            }
+        });
+        assertThat(likes).containsExactlyInAnyOrder(
+                new Like(f1.getId(), u1.getId()),
+                new Like(f2.getId(), u1.getId()),
+                new Like(f2.getId(), u2.getId()));
+    }
+
+    @Test
+    void contract_popular_filters_by_genre_mpa_and_year_and_follows_genre_changes() {
+        Film f1 = films().create(film("F1", 1, Set.of(1)));
+        Film f2 = films().create(film("F2", 2, Set.of(1, 2)));
+        Film f3Draft = film("F3", 1, Set.of(2));
+        f3Draft.setReleaseDate(LocalDate.of(2010, 5, 1));
+        Film f3 = films().create(f3Draft);
+        User u1 = users().create(user("filter1"));
+        User u2 = users().create(user("filter2"));
+        User u3 = users().create(user("filter3"));
+        films().addLike(f1.getId(), u1.getId());
+        films().addLikes(List.of(new Like(f2.getId(), u1.getId()), new Like(f2.getId(), u2.getId())));
+        films().addLikes(List.of(
+                new Like(f3.getId(), u1.getId()),
+                new Like(f3.getId(), u2.getId()),
+                new Like(f3.getId(), u3.getId())));
+
+        assertThat(filteredPopularAmong(1, null, null, f1, f2, f3)).containsExactly(f2.getId(), f1.getId());
+        assertThat(filteredPopularAmong(2, null, null, f1, f2, f3)).containsExactly(f3.getId(), f2.getId());
+        assertThat(filteredPopularAmong(null, 1, null, f1, f2, f3)).containsExactly(f3.getId(), f1.getId());
+        assertThat(filteredPopularAmong(null, null, 2000, f1, f2, f3)).containsExactly(f2.getId(), f1.getId());
+        assertThat(filteredPopularAmong(1, 1, null, f1, f2, f3)).containsExactly(f1.getId());
+        assertThat(filteredPopularAmong(2, null, 2010, f1, f2, f3)).containsExactly(f3.getId());
+        assertThat(filteredPopularAmong(null, 2, 2000, f1, f2, f3)).containsExactly(f2.getId());
+
+        // Новый жанр фильма сразу получает его лайки
+        Film changed = film("F3", 1, Set.of(1));
+        changed.setId(f3.getId());
+        changed.setReleaseDate(LocalDate.of(2010, 5, 1));
+        films().update(changed);
+        assertThat(filteredPopularAmong(1, null, null, f1, f2, f3))
+                .containsExactly(f3.getId(), f2.getId(), f1.getId());
+        assertThat(filteredPopularAmong(2, null, null, f1, f2, f3)).containsExactly(f2.getId());
+
+        films().addLikes(List.of(new Like(f1.getId(), u2.getId()), new Like(f1.getId(), u3.getId())));
+        assertThat(filteredPopularAmong(1, null, null, f1, f2, f3))
+                .containsExactly(f1.getId(), f3.getId(), f2.getId());
+        assertThat(filteredPopularAmong(1, 1, 2010, f1, f2, f3)).containsExactly(f3.getId());
+    }
+
+    // Порядок фильмов теста в общем топе; в хранилище могут быть и другие фильмы
+    private List<Integer> popularAmong(Film... films) {
+        Set<Integer> ids = Arrays.stream(films)
+                .map(Film::getId)
+                .collect(Collectors.toSet());
+        return films().getPopular(Integer.MAX_VALUE).stream()
+                .map(Film::getId)
+                .filter(ids::contains)
+                .toList();
+    }
+
+    private List<Integer> filteredPopularAmong(Integer genreId, Integer mpaId, Integer year, Film... films) {
+        Set<Integer> ids = Arrays.stream(films)
+                .map(Film::getId)
+                .collect(Collectors.toSet());
+        return films().getPopular(Integer.MAX_VALUE, genreId, mpaId, year).stream()
+                .map(Film::getId)
+                .filter(ids::contains)
+                .toList();
+    }
+
+    protected static Film film(String name, int mpaId, Set<Integer> genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание " + name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new MpaRating(mpaId, null, null));
+        List<Genre> genres = genreIds.stream()
+                .map(id -> new Genre(id, null))
+                .toList();
+        film.setGenres(Set.copyOf(genres));
+        return film;
+    }
+
+    protected static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@t.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryFilmStorageContractTest extends FilmStorageContractTest {
+
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(new DataVersions());
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(filmStorage);
+
+    @Override
+    protected FilmStorage films() {
+        return filmStorage;
+    }
+
+    @Override
+    protected UserStorage users() {
+        return userStorage;
+    }
+
+    @Test
+    void like_racing_with_user_delete_leaves_no_orphan_likes() throws Exception {
+        Film film = filmStorage.create(film("Race", 1, Set.of()));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 200; i++) {
+                User user = userStorage.create(user("race" + i));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> tasks = new ArrayList<>();
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    filmStorage.addLike(film.getId(), user.getId());
+                    return null;
+                }));
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    userStorage.delete(user.getId());
+                    return null;
+                }));
+                start.countDown();
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Integer> likers = new ArrayList<>();
+        filmStorage.forEachLike(like -> likers.add(like.getUserId()));
+        assertThat(likers).isEmpty();
+        assertThat(filmStorage.getPopular(1)).extracting(Film::getId).containsExactly(film.getId());
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({
+        FilmDbStorage.class,
+        FilmRowMapper.class,
+        GenreDbStorage.class,
+        GenreRowMapper.class,
+        UserDbStorage.class,
+        UserRowMapper.class,
+        DataVersions.class
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class JdbcFilmStorageContractTest extends FilmStorageContractTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    @Override
+    protected FilmStorage films() {
+        return filmStorage;
+    }
+
+    @Override
+    protected UserStorage users() {
+        return userStorage;
+    }
+}
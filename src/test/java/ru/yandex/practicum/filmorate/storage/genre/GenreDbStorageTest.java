@@ -6,7 +6,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
-import ru.yandex.practicum.filmorate.storage.mapper.GenreOfFilmRowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
 
 import java.util.List;
@@ -15,11 +17,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({GenreDbStorage.class, GenreRowMapper.class, GenreOfFilmRowMapper.class})
+@Import({GenreDbStorage.class, GenreRowMapper.class, DataVersions.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class GenreDbStorageTest {
 
     private final GenreDbStorage genreStorage;
+    private final NamedParameterJdbcTemplate jdbc;
 
     @Test
     void getAll_contains_seed_data() {
@@ -43,4 +46,23 @@ class GenreDbStorageTest {
                 .contains(1, 2)
                 .doesNotContain(999);
     }
+
+    @Test
+    void invalidate_reloads_dictionary() {
+        assertThat(genreStorage.getById(100)).isEmpty();
+
+        jdbc.update("INSERT INTO genres(id, name) VALUES (:id, :name)",
+                new MapSqlParameterSource()
+                        .addValue("id", 100)
+                        .addValue("name", "Новый"));
+        assertThat(genreStorage.getById(100)).isEmpty();
+
+        genreStorage.invalidate();
+        assertThat(genreStorage.getById(100))
+                .isPresent()
+                .hasValueSatisfying(g -> assertThat(g.getName()).isEqualTo("Новый"));
+
+        // Вставка откатится вместе с транзакцией теста, кэш тоже сбрасываю
+        genreStorage.invalidate();
+    }
 }
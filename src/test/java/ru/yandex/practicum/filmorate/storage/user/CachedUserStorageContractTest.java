@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.CachedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({
+        FilmDbStorage.class,
+        FilmRowMapper.class,
+        GenreDbStorage.class,
+        GenreRowMapper.class,
+        UserDbStorage.class,
+        UserRowMapper.class,
+        DataVersions.class
+})
+class CachedUserStorageContractTest extends UserStorageContractTest {
+
+    private final CachedUserStorage userStorage;
+
+    @Autowired
+    CachedUserStorageContractTest(FilmDbStorage filmDbStorage, UserDbStorage userDbStorage) {
+        this.userStorage = new CachedUserStorage(userDbStorage, new CachedFilmStorage(filmDbStorage));
+    }
+
+    @Override
+    protected UserStorage users() {
+        return userStorage;
+    }
+
+    @Test
+    void cached_user_is_reloaded_after_update() {
+        User user = userStorage.create(user("cachedBefore"));
+        assertThat(userStorage.getById(user.getId())).isPresent();
+
+        User changed = user("cachedAfter");
+        changed.setId(user.getId());
+        userStorage.update(changed);
+
+        assertThat(userStorage.getById(user.getId()))
+                .isPresent()
+                .hasValueSatisfying(found -> assertThat(found.getLogin()).isEqualTo("cachedAfter"));
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+class InMemoryUserStorageContractTest extends UserStorageContractTest {
+
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(new InMemoryFilmStorage(new DataVersions()));
+
+    @Override
+    protected UserStorage users() {
+        return userStorage;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({UserDbStorage.class, UserRowMapper.class, DataVersions.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class JdbcUserStorageContractTest extends UserStorageContractTest {
+
+    private final UserDbStorage userStorage;
+
+    @Override
+    protected UserStorage users() {
+        return userStorage;
+    }
+}
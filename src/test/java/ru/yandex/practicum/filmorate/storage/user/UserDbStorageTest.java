@@ -8,15 +8,17 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({UserDbStorage.class, UserRowMapper.class})
+@Import({UserDbStorage.class, UserRowMapper.class, DataVersions.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class UserDbStorageTest {
 
@@ -60,6 +62,38 @@ class UserDbStorageTest {
                 .hasValueSatisfying(found -> assertThat(found.getName()).isEqualTo("B2"));
     }
 
+    @Test
+    void getAll_pages_by_id() {
+        User u1 = new User();
+        u1.setEmail("p1@t.ru");
+        u1.setLogin("p1");
+        u1.setName("p1");
+        u1.setBirthday(LocalDate.of(1991, 1, 1));
+        u1 = userStorage.create(u1);
+
+        User u2 = new User();
+        u2.setEmail("p2@t.ru");
+        u2.setLogin("p2");
+        u2.setName("p2");
+        u2.setBirthday(LocalDate.of(1992, 2, 2));
+        u2 = userStorage.create(u2);
+
+        User u3 = new User();
+        u3.setEmail("p3@t.ru");
+        u3.setLogin("p3");
+        u3.setName("p3");
+        u3.setBirthday(LocalDate.of(1993, 3, 3));
+        u3 = userStorage.create(u3);
+
+        assertThat(userStorage.getAll(u1.getId() - 1, 2))
+                .extracting(User::getId)
+                .containsExactly(u1.getId(), u2.getId());
+
+        assertThat(userStorage.getAll(u2.getId(), 2))
+                .extracting(User::getId)
+                .containsExactly(u3.getId());
+    }
+
     @Test
     void delete() {
         User u = new User();
@@ -69,9 +103,12 @@ class UserDbStorageTest {
         u.setBirthday(LocalDate.of(1990, 3, 3));
         u = userStorage.create(u);
 
+        assertThat(userStorage.exists(u.getId())).isTrue();
+
         userStorage.delete(u.getId());
 
         assertThat(userStorage.getById(u.getId())).isEmpty();
+        assertThat(userStorage.exists(u.getId())).isFalse();
     }
 
     @Test
@@ -111,4 +148,50 @@ class UserDbStorageTest {
         userStorage.deleteFriend(u1.getId(), u3.getId());
         assertThat(userStorage.getFriends(u1.getId())).isEmpty();
     }
+
+    @Test
+    void commonFriends_follow_friend_and_user_deletes() {
+        User u1 = userStorage.create(user("cf1"));
+        User u2 = userStorage.create(user("cf2"));
+        User u3 = userStorage.create(user("cf3"));
+        User u4 = userStorage.create(user("cf4"));
+
+        userStorage.addFriend(u1.getId(), u3.getId());
+        userStorage.addFriend(u1.getId(), u4.getId());
+        userStorage.addFriend(u2.getId(), u4.getId());
+        userStorage.addFriend(u2.getId(), u3.getId());
+        userStorage.addFriend(u2.getId(), u3.getId());
+
+        assertThat(userStorage.getCommonFriends(u1.getId(), u2.getId()))
+                .extracting(User::getId)
+                .containsExactly(u3.getId(), u4.getId());
+
+        userStorage.delete(u4.getId());
+        assertThat(userStorage.getCommonFriends(u1.getId(), u2.getId()))
+                .extracting(User::getId)
+                .containsExactly(u3.getId());
+
+        userStorage.deleteFriend(u2.getId(), u3.getId());
+        assertThat(userStorage.getCommonFriends(u1.getId(), u2.getId())).isEmpty();
+    }
+
+    @Test
+    void getByIds_skips_missing_and_sorts_by_id() {
+        User u1 = userStorage.create(user("ids1"));
+        User u2 = userStorage.create(user("ids2"));
+
+        assertThat(userStorage.getByIds(List.of(u2.getId(), 999_999, u1.getId())))
+                .extracting(User::getId)
+                .containsExactly(u1.getId(), u2.getId());
+        assertThat(userStorage.getByIds(List.of())).isEmpty();
+    }
+
+    private static User user(String login) {
+        User u = new User();
+        u.setEmail(login + "@t.ru");
+        u.setLogin(login);
+        u.setName(login);
+        u.setBirthday(LocalDate.of(1990, 1, 1));
+        return u;
+    }
 }
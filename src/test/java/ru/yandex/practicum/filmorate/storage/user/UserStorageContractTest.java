@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DbStorageException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Общие проверки для всех реализаций UserStorage: каждая реализация должна вести себя одинаково.
+ *
+ * Проверки объявлены здесь, поэтому и @Transactional здесь: Spring ищет его на классе метода,
+ * а не на наследнике. Для JDBC-реализаций каждая проверка откатывается, для памяти аннотация ни на что не влияет.
+ */
+@Transactional
+abstract class UserStorageContractTest {
+
+    protected abstract UserStorage users();
+
+    @Test
+    void contract_create_assigns_id_and_getById_returns_user() {
+        User created = users().create(user("contract"));
+
+        assertThat(created.getId()).isNotNull();
+        assertThat(users().exists(created.getId())).isTrue();
+        assertThat(users().getById(created.getId()))
+                .isPresent()
+                .hasValueSatisfying(found -> {
+                    assertThat(found.getLogin()).isEqualTo("contract");
+                    assertThat(found.getEmail()).isEqualTo("contract@t.ru");
+                });
+        assertThat(users().getById(999_999)).isEmpty();
+        assertThat(users().exists(999_999)).isFalse();
+    }
+
+    @Test
+    void contract_getByEmailsOrLogins_matches_either_field() {
+        User byEmail = users().create(user("lookup1"));
+        User byLogin = users().create(user("lookup2"));
+        users().create(user("lookup3"));
+
+        assertThat(users().getByEmailsOrLogins(List.of("lookup1@t.ru", "none@t.ru"), List.of("lookup2")))
+                .extracting(User::getId)
+                .containsExactlyInAnyOrder(byEmail.getId(), byLogin.getId());
+        assertThat(users().getByEmailsOrLogins(List.of(), List.of("lookup2")))
+                .extracting(User::getId)
+                .containsExactly(byLogin.getId());
+        assertThat(users().getByEmailsOrLogins(List.of(), List.of())).isEmpty();
+    }
+
+    @Test
+    void contract_update_replaces_fields_and_fails_for_missing_user() {
+        User user = users().create(user("before"));
+
+        User changed = user("after");
+        changed.setId(user.getId());
+        users().update(changed);
+
+        assertThat(users().getById(user.getId()))
+                .isPresent()
+                .hasValueSatisfying(found -> assertThat(found.getLogin()).isEqualTo("after"));
+
+        User missing = user("missing");
+        missing.setId(999_999);
+        assertThatThrownBy(() -> users().update(missing)).isInstanceOf(DbStorageException.class);
+    }
+
+    @Test
+    void contract_batch_create_and_update_skip_missing_users() {
+        List<User> created = users().createAll(new ArrayList<>(List.of(user("batchA"), user("batchB"))));
+
+        assertThat(created).extracting(User::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(users().getById(created.get(1).getId()))
+                .hasValueSatisfying(found -> assertThat(found.getLogin()).isEqualTo("batchB"));
+
+        User changed = user("batchC");
+        changed.setId(created.get(0).getId());
+        User missing = user("batchMissing");
+        missing.setId(999_999);
+
+        assertThat(users().updateAll(List.of(missing, changed)))
+                .extracting(User::getId)
+                .containsExactly(changed.getId());
+        assertThat(users().getById(changed.getId()))
+                .hasValueSatisfying(found -> assertThat(found.getLogin()).isEqualTo("batchC"));
+        assertThat(users().exists(999_999)).isFalse();
+    }
+
+    @Test
+    void contract_getAll_and_getByIds_in_id_order() {
+        User u1 = users().create(user("page1"));
+        User u2 = users().create(user("page2"));
+        User u3 = users().create(user("page3"));
+
+        assertThat(users().getAll(u1.getId() - 1, 2))
+                .extracting(User::getId)
+                .containsExactly(u1.getId(), u2.getId());
+        assertThat(users().getByIds(List.of(u3.getId(), 999_999, u1.getId())))
+                .extracting(User::getId)
+                .containsExactly(u1.getId(), u3.getId());
+    }
+
+    @Test
+    void contract_friendship_is_one_directional_and_idempotent() {
+        User u1 = users().create(user("oneway1"));
+        User u2 = users().create(user("oneway2"));
+
+        users().addFriend(u1.getId(), u2.getId());
+        users().addFriend(u1.getId(), u2.getId());
+
+        assertThat(users().getFriends(u1.getId())).extracting(User::getId).containsExactly(u2.getId());
+        assertThat(users().getFriends(u2.getId())).isEmpty();
+
+        users().deleteFriend(u1.getId(), u2.getId());
+        assertThat(users().getFriends(u1.getId())).isEmpty();
+    }
+
+    @Test
+    void contract_batch_friends_skip_duplicates_self_and_missing_users() {
+        User u1 = users().create(user("edges1"));
+        User u2 = users().create(user("edges2"));
+        User u3 = users().create(user("edges3"));
+
+        users().addFriends(List.of(
+                new Friendship(u1.getId(), u3.getId()),
+                new Friendship(u1.getId(), u2.getId()),
+                new Friendship(u3.getId(), u2.getId()),
+                new Friendship(u1.getId(), u2.getId()),
+                new Friendship(u2.getId(), u2.getId()),
+                new Friendship(u2.getId(), 999_999)
+        ));
+
+        assertThat(users().getFriends(u1.getId()))
+                .extracting(User::getId)
+                .containsExactlyInAnyOrder(u2.getId(), u3.getId());
+        assertThat(users().getFriends(u2.getId())).isEmpty();
+        assertThat(users().getFriendIds(u1.getId())).containsExactly(u2.getId(), u3.getId());
+        assertThat(users().getFriendIds(u2.getId())).isEmpty();
+
+        List<Friendship> friendships = new ArrayList<>();
+        users().forEachFriendship(friendship -> {
+            if (friendship.getUserId() >= u1.getId() && friendship.getUserId() <= u3.getId()) {
+                friendships.add(friendship);
+            }
+        });
+        assertThat(friendships).containsExactly(
+                new Friendship(u1.getId(), u2.getId()),
+                new Friendship(u1.getId(), u3.getId()),
+                new Friendship(u3.getId(), u2.getId()));
+        assertThat(users().getCommonFriends(u1.getId(), u3.getId()))
+                .extracting(User::getId)
+                .containsExactly(u2.getId());
+        assertThat(users().getAllIds()).isSorted().contains(u1.getId(), u2.getId(), u3.getId());
+    }
+
+    @Test
+    void contract_common_friends_sorted_by_id_and_follow_user_delete() {
+        User u1 = users().create(user("common1"));
+        User u2 = users().create(user("common2"));
+        User f1 = users().create(user("common3"));
+        User f2 = users().create(user("common4"));
+        User f3 = users().create(user("common5"));
+
+        users().addFriend(u1.getId(), f3.getId());
+        users().addFriend(u1.getId(), f1.getId());
+        users().addFriend(u1.getId(), f2.getId());
+        users().addFriend(u2.getId(), f2.getId());
+        users().addFriend(u2.getId(), f3.getId());
+        users().addFriend(u2.getId(), f1.getId());
+
+        assertThat(users().getCommonFriends(u1.getId(), u2.getId()))
+                .extracting(User::getId)
+                .containsExactly(f1.getId(), f2.getId(), f3.getId());
+
+        users().delete(f2.getId());
+
+        assertThat(users().getCommonFriends(u1.getId(), u2.getId()))
+                .extracting(User::getId)
+                .containsExactly(f1.getId(), f3.getId());
+        assertThat(users().getFriends(u1.getId()))
+                .extracting(User::getId)
+                .containsExactly(f1.getId(), f3.getId());
+    }
+
+    protected static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@t.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}